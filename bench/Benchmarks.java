@@ -0,0 +1,178 @@
+import com.sun.management.ThreadMXBean;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+// Micro benchmarks of the physics and rendering hot paths, reporting throughput and allocation per operation.
+// Run headless from the compiled classes of src and bench: java Benchmarks [name filter]
+public class Benchmarks {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 10;
+    private static final long ITERATION_NANOS = 200_000_000;
+    private static final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static double sink; // results are written here so the JIT cannot drop the benchmarked code
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String filter = args.length > 0 ? args[0] : "";
+
+        SimulationEngine engine = new SimulationEngine();
+        Planet earth = engine.getPlanets().get(0);
+        double circularVelocity = Math.sqrt(earth.mu / 0.1);
+
+        ArrayList<Object[]> orbits = new ArrayList<>();
+        orbits.add(new Object[]{"circular", new Vector(0.1, 0), new Vector(0, circularVelocity)});
+        orbits.add(new Object[]{"eccentric", new Vector(0.1, 0), new Vector(0, 1.3 * circularVelocity)});
+        orbits.add(new Object[]{"hyperbolic", new Vector(0.1, 0), new Vector(0, 1.6 * circularVelocity)});
+        orbits.add(new Object[]{"crash", new Vector(0.3, 0), new Vector(0, 0.3 * circularVelocity)});
+
+        for (Object[] orbitCase : orbits) {
+            Orbit orbit = new Orbit(earth);
+            Vector position = (Vector) orbitCase[1];
+            Vector velocity = (Vector) orbitCase[2];
+            run(filter, "Orbit.recalculate/" + orbitCase[0], () -> {
+                orbit.recalculate(position, velocity);
+                sink += orbit.endTime;
+            });
+        }
+
+        Orbit orbit = new Orbit(earth);
+        orbit.recalculate((Vector) orbits.get(1)[1], (Vector) orbits.get(1)[2]);
+        Rectangle visible = new Rectangle(0, 0, 1024, 768);
+        run(filter, "Orbit.updatePath/unchanged", () -> sink += orbit.updatePath(visible).getBounds().x);
+        run(filter, "Orbit.updatePath/zoomed", () -> {
+            OrbitCalculator.scaleFactor = OrbitCalculator.scaleFactor == 1000 ? 1100 : 1000;
+            sink += orbit.updatePath(visible).getBounds().x;
+        });
+        run(filter, "Orbit.updatePath/zoomed in far", () -> {
+            OrbitCalculator.scaleFactor = OrbitCalculator.scaleFactor == 50000 ? 55000 : 50000;
+            sink += orbit.updatePath(visible).getBounds().x;
+        });
+        OrbitCalculator.scaleFactor = 1000;
+
+        // one burn step at warp speed 10, which used to be an impulse followed by Orbit.recalculate
+        PoweredFlight poweredFlight = new PoweredFlight();
+        Vector burnPosition = new Vector(0.1, 0);
+        Vector burnVelocity = new Vector(0, circularVelocity);
+        poweredFlight.start(burnPosition, burnVelocity, 1000, earth.mu);
+        run(filter, "PoweredFlight.integrate", () -> {
+            if (poweredFlight.getMass() < 600) {
+                poweredFlight.start(burnPosition, burnVelocity, 1000, earth.mu);
+            }
+            poweredFlight.integrate(10 * SimulationEngine.timeStep, 0.1 / SimulationEngine.timeStep, 2.7, Burn.PROGRADE);
+            sink += poweredFlight.getMass();
+        });
+
+        long[] orbitSteps = {0};
+        run(filter, "StaticOrbit.setTime", () -> {
+            earth.staticOrbit.setTime(++orbitSteps[0] * SimulationEngine.timeStep);
+            sink += earth.staticOrbit.getPosition().getX();
+        });
+        Vector ephemerisPosition = new Vector(0, 0);
+        Vector ephemerisVelocity = new Vector(0, 0);
+        double[] ephemerisTime = {0};
+        run(filter, "StaticOrbit.getStateAfter", () -> {
+            ephemerisTime[0] += 0.37; // far from now, like planners and encounter searches ask
+            earth.staticOrbit.getStateAfter(ephemerisTime[0], ephemerisPosition, ephemerisVelocity);
+            sink += ephemerisPosition.getX();
+        });
+
+        for (int warpSpeed : Orbiter.WARP_SPEEDS) {
+            Spacecraft spacecraft = new SimulationEngine().getSpacecraft();
+            double timeStep = SimulationEngine.timeStep * warpSpeed;
+            run(filter, "Spacecraft.update/" + warpSpeed + "x", () -> {
+                spacecraft.update(timeStep);
+                sink += spacecraft.position.getX();
+            });
+        }
+
+        // the craft of the fleet are updated in parallel chunks
+        Fleet fleet = new SimulationEngine(1).getFleet();
+        fleet.addConstellation(earth, 10000, new Random(1));
+        run(filter, "Fleet.update/10000 craft", () -> {
+            fleet.update(SimulationEngine.timeStep);
+            sink += fleet.size();
+        });
+
+        Space space = new Space(engine);
+        BufferedImage image = new BufferedImage(1024, 768, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        Snapshot snapshot = new Snapshot(engine, null, null);
+        engine.getSun().updateMiddle(512, 384);
+        for (int i = 0; i < engine.getPlanets().size(); i++) {
+            engine.getPlanets().get(i).updatePixelPosition(snapshot.planetX[i], snapshot.planetY[i]);
+        }
+        snapshot.spacecraft.updatePixelPosition(snapshot.spacecraft.position.getX(), snapshot.spacecraft.position.getY());
+        space.setFrameSize(1024, 768);
+        space.setSize(1024, 768);
+        space.setSnapshot(snapshot, new int[0], new int[0]); // no fleet
+        run(filter, "Space.paintComponent", () -> space.paintComponent(g2d));
+        g2d.dispose();
+
+        if (sink == 42) {
+            System.out.println(sink);
+        }
+    }
+
+    private static void run(String filter, String name, Runnable operation) {
+        if (!name.contains(filter)) {
+            return;
+        }
+
+        // grow the batch until it takes about a millisecond, so reading the clock does not dominate
+        int batchSize = 1;
+        while (time(operation, batchSize) < 1_000_000 && batchSize < 1 << 24) {
+            batchSize *= 2;
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(operation, batchSize);
+        }
+
+        double[] throughputs = new double[MEASUREMENT_ITERATIONS];
+        long operations = 0;
+        long allocatedBytes = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long allocatedBefore = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long[] result = iteration(operation, batchSize);
+            allocatedBytes += threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+            operations += result[0];
+            throughputs[i] = 1e9 * result[0] / result[1];
+        }
+
+        double mean = 0;
+        for (double throughput : throughputs) {
+            mean += throughput / MEASUREMENT_ITERATIONS;
+        }
+        double variance = 0;
+        for (double throughput : throughputs) {
+            variance += (throughput - mean) * (throughput - mean) / (MEASUREMENT_ITERATIONS - 1);
+        }
+
+        System.out.println(String.format(Locale.ROOT, "%-42s %14.1f ops/s  +- %5.1f%%  %10.1f B/op",
+                name, mean, 100 * Math.sqrt(variance) / mean, (double) allocatedBytes / operations));
+    }
+
+    // runs batches for one iteration, returns the number of operations and the elapsed nanoseconds
+    private static long[] iteration(Runnable operation, int batchSize) {
+        long operations = 0;
+        long elapsed = 0;
+        while (elapsed < ITERATION_NANOS) {
+            elapsed += time(operation, batchSize);
+            operations += batchSize;
+        }
+        return new long[]{operations, elapsed};
+    }
+
+    private static long time(Runnable operation, int batchSize) {
+        long beginTime = System.nanoTime();
+        for (int i = 0; i < batchSize; i++) {
+            operation.run();
+        }
+        return System.nanoTime() - beginTime;
+    }
+}
@@ -0,0 +1,254 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.IntStream;
+
+// Closest approaches of the spacecraft to the planets or moons orbiting the same body, over the next revolutions of
+// its current conic. The conic is followed as it is, also where it would enter an SOI. The distance is sampled and a
+// minimum is where the two start to move apart, which is then refined by bisection on the relative radial velocity.
+// The time ahead is split into windows that are searched in parallel on a pool of their own, so a long search does not
+// hold up the N-body and fleet steps in the common pool. A search runs on its own thread, the physics thread starts the
+// next one when the last one is done, so the results follow the flight without holding up a step.
+public class ApproachSearch {
+    public static final int REVOLUTIONS = 200;
+    private static final int SAMPLES_PER_REVOLUTION = 64; // of the spacecraft or the planet, whichever is faster
+    private static final int WINDOW_SAMPLES = 2048; // samples per parallel task
+    private static final int MAX_SAMPLES = 1 << 22;
+    private static final double TIME_TOLERANCE = 1e-9;
+    private static final double CHANGE_TOLERANCE = 1e-6; // results closer than this to the last ones are not published
+    private static final double MAX_FITTED_ECCENTRICITY = 0.9; // more eccentric orbits take too many segments to fit
+
+    // relative to the orbited body at the time of the approach, the time is that of the engine
+    public record Approach(Planet planet, CelestialBody body, double time, double distance, double x, double y, double planetX, double planetY) {
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "approach search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("approach search " + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+    private volatile Approach[] approaches = new Approach[0]; // of the last search, replaced as a whole
+    private int generation; // guarded by this, counts the clears so a search that ran during one is not published
+    private volatile boolean searching;
+    private Orbit searchedOrbit; // physics thread only
+    private int searchedRevision;
+    private double searchedTime = Double.NaN;
+    private Orbit fittedOrbit; // search thread only, the perifocal orbit is fitted again when the orbit changed
+    private int fittedRevision;
+    private StaticOrbit perifocalOrbit;
+
+    // Called on the physics thread. The orbit is copied and the planets are taken at their current time, so the
+    // search never reads what the next steps change. A reset of the planets does change their orbits, it has to clear
+    // the search so what it finds is not published.
+    public void update(Spacecraft spacecraft, double time) {
+        Orbit orbit = spacecraft.orbit;
+        if (searching || orbit == searchedOrbit && orbit.getRevision() == searchedRevision && time == searchedTime && !spacecraft.isInPoweredFlight()) {
+            return;
+        }
+        searchedOrbit = orbit;
+        searchedRevision = orbit.getRevision();
+        searchedTime = time;
+
+        Orbit copy = new Orbit(orbit);
+        double orbitTime = spacecraft.getOrbitTime();
+        if (spacecraft.isInPoweredFlight()) {
+            copy.recalculate(spacecraft.position, spacecraft.velocity); // the osculating orbit
+            orbitTime = 0;
+        }
+        ArrayList<Planet> children = orbit.celestialBody.children;
+        Planet[] planets = children.toArray(new Planet[0]);
+        double[] planetTimes = new double[planets.length];
+        for (int i = 0; i < planets.length; i++) {
+            planetTimes[i] = planets[i].staticOrbit.getTime();
+        }
+
+        searching = true;
+        double startOrbitTime = orbitTime;
+        Orbit fitted = spacecraft.isInPoweredFlight() ? null : orbit;
+        int revision = orbit.getRevision();
+        int searchGeneration = generation; // only the physics thread changes it
+        executor.execute(() -> {
+            try {
+                if (fitted == null || fitted != fittedOrbit || revision != fittedRevision) {
+                    perifocalOrbit = copy.period < Double.POSITIVE_INFINITY && copy.getEccentricity() < MAX_FITTED_ECCENTRICITY ? copy.getPerifocalOrbit() : null;
+                    fittedOrbit = fitted;
+                    fittedRevision = revision;
+                }
+                publish(search(copy, perifocalOrbit, startOrbitTime, time, planets, planetTimes), searchGeneration);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                searching = false;
+            }
+        });
+    }
+
+    public Approach[] getApproaches() {
+        return approaches;
+    }
+
+    public synchronized void clear() {
+        generation++;
+        approaches = new Approach[0];
+        searchedOrbit = null;
+    }
+
+    // the array is kept while the approaches stay the same, so the renderer only repaints when they change
+    private synchronized void publish(Approach[] found, int searchGeneration) {
+        if (searchGeneration != generation) {
+            return;
+        }
+        Approach[] last = approaches;
+        boolean changed = found.length != last.length;
+        for (int i = 0; i < found.length && !changed; i++) {
+            changed = found[i].planet != last[i].planet || found[i].body != last[i].body
+                    || Math.abs(found[i].time - last[i].time) > CHANGE_TOLERANCE || Math.abs(found[i].distance - last[i].distance) > CHANGE_TOLERANCE;
+        }
+        if (changed) {
+            approaches = found;
+        }
+    }
+
+    // the closest approach to each planet, planets without one ahead are left out, the perifocal orbit can be null
+    public static Approach[] search(Orbit orbit, StaticOrbit perifocalOrbit, double orbitTime, double time, Planet[] planets, double[] planetTimes) {
+        long start = Profiler.start();
+        double horizon = Math.min(REVOLUTIONS * orbit.period, orbit.endTime - orbitTime);
+        double period = orbit.period;
+        for (Planet planet : planets) {
+            period = Math.min(period, planet.staticOrbit.getPeriod());
+        }
+        if (planets.length == 0 || !(horizon > 0) || horizon == Double.POSITIVE_INFINITY) {
+            return new Approach[0];
+        }
+        int samples = (int) Math.min(MAX_SAMPLES, Math.ceil(horizon / period * SAMPLES_PER_REVOLUTION));
+        double step = horizon / samples;
+        int windows = (samples + WINDOW_SAMPLES - 1) / WINDOW_SAMPLES;
+
+        Approach[] closest = POOL.submit(() -> IntStream.range(0, windows).parallel()
+                .mapToObj(window -> searchWindow(orbit, perifocalOrbit, orbitTime, time, planets, planetTimes, step, window * WINDOW_SAMPLES, Math.min(samples, (window + 1) * WINDOW_SAMPLES)))
+                .reduce(new Approach[planets.length], ApproachSearch::closer)).join();
+        ArrayList<Approach> found = new ArrayList<>();
+        for (Approach approach : closest) {
+            if (approach != null) {
+                found.add(approach);
+            }
+        }
+        Profiler.record(Profiler.Phase.APPROACH_SEARCH, start);
+        return found.toArray(new Approach[0]);
+    }
+
+    private static Approach[] closer(Approach[] a, Approach[] b) {
+        Approach[] closest = new Approach[a.length];
+        for (int i = 0; i < a.length; i++) {
+            closest[i] = a[i] == null || b[i] != null && b[i].distance < a[i].distance ? b[i] : a[i];
+        }
+        return closest;
+    }
+
+    // The samples from first to last, a minimum lies between two samples where the relative radial velocity turns
+    // positive. It is only refined when it can beat the closest approach found so far: between the samples the
+    // distance cannot shrink faster than the two maximum speeds together.
+    private static Approach[] searchWindow(Orbit orbit, StaticOrbit perifocalOrbit, double orbitTime, double time, Planet[] planets, double[] planetTimes,
+                                           double step, int first, int last) {
+        Approach[] closest = new Approach[planets.length];
+        double[] previousDistances = new double[planets.length];
+        double[] previousSpeeds = new double[planets.length];
+        Vector position = new Vector(0, 0);
+        Vector velocity = new Vector(0, 0);
+        Vector planetPosition = new Vector(0, 0);
+        Vector planetVelocity = new Vector(0, 0);
+        for (int i = first; i <= last; i++) {
+            double sampleTime = i * step;
+            getState(orbit, perifocalOrbit, orbitTime + sampleTime, position, velocity); // once for all planets
+            for (int j = 0; j < planets.length; j++) {
+                planets[j].staticOrbit.getStateAt(planetTimes[j] + sampleTime, planetPosition, planetVelocity);
+                double dx = position.getX() - planetPosition.getX();
+                double dy = position.getY() - planetPosition.getY();
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                double radialSpeed = dx * (velocity.getX() - planetVelocity.getX()) + dy * (velocity.getY() - planetVelocity.getY());
+                if (i > first && previousSpeeds[j] < 0 && radialSpeed >= 0) {
+                    double maxSpeed = orbit.getMaxSpeed() + planets[j].staticOrbit.getMaxSpeed();
+                    double lowerBound = 0.5 * (previousDistances[j] + distance - step * maxSpeed);
+                    if (closest[j] == null || lowerBound < closest[j].distance) {
+                        Approach approach = refine(orbit, perifocalOrbit, orbitTime, time, planets[j], planetTimes[j], sampleTime - step, sampleTime);
+                        if (closest[j] == null || approach.distance < closest[j].distance) {
+                            closest[j] = approach;
+                        }
+                    }
+                }
+                previousDistances[j] = distance;
+                previousSpeeds[j] = radialSpeed;
+            }
+        }
+        return closest;
+    }
+
+    // bisection between a time the two approach each other and a time they move apart
+    private static Approach refine(Orbit orbit, StaticOrbit perifocalOrbit, double orbitTime, double time, Planet planet, double planetTime, double approaching, double leaving) {
+        Vector position = new Vector(0, 0);
+        Vector velocity = new Vector(0, 0);
+        Vector planetPosition = new Vector(0, 0);
+        Vector planetVelocity = new Vector(0, 0);
+        while (leaving - approaching > TIME_TOLERANCE) {
+            double middle = 0.5 * (approaching + leaving);
+            if (getRadialSpeed(orbit, perifocalOrbit, orbitTime + middle, planet.staticOrbit, planetTime + middle, position, velocity, planetPosition, planetVelocity) < 0) {
+                approaching = middle;
+            } else {
+                leaving = middle;
+            }
+        }
+        getRadialSpeed(orbit, perifocalOrbit, orbitTime + leaving, planet.staticOrbit, planetTime + leaving, position, velocity, planetPosition, planetVelocity);
+        double dx = position.getX() - planetPosition.getX();
+        double dy = position.getY() - planetPosition.getY();
+        return new Approach(planet, orbit.celestialBody, time + leaving, Math.sqrt(dx * dx + dy * dy),
+                position.getX(), position.getY(), planetPosition.getX(), planetPosition.getY());
+    }
+
+    // rate at which the distance grows, times the distance, the states of both are written to the vectors
+    private static double getRadialSpeed(Orbit orbit, StaticOrbit perifocalOrbit, double orbitTime, StaticOrbit planetOrbit, double planetTime,
+                                         Vector position, Vector velocity, Vector planetPosition, Vector planetVelocity) {
+        getState(orbit, perifocalOrbit, orbitTime, position, velocity);
+        planetOrbit.getStateAt(planetTime, planetPosition, planetVelocity);
+        return (position.getX() - planetPosition.getX()) * (velocity.getX() - planetVelocity.getX())
+                + (position.getY() - planetPosition.getY()) * (velocity.getY() - planetVelocity.getY());
+    }
+
+    // from the fit when there is one, otherwise solved with Kepler's equation
+    private static void getState(Orbit orbit, StaticOrbit perifocalOrbit, double orbitTime, Vector position, Vector velocity) {
+        if (perifocalOrbit != null) {
+            perifocalOrbit.getStateAt(orbitTime, position, velocity);
+            orbit.toBodyFrame(position, velocity);
+        } else {
+            orbit.updateState(orbitTime, position, velocity);
+        }
+    }
+
+    // a cross where the spacecraft will be, the planet where it will be then and a line between them
+    public static void draw(Graphics2D g2d, Approach[] approaches) {
+        for (Approach approach : approaches) {
+            int originX = approach.body.x_int + Orbiter.xdrag;
+            int originY = approach.body.y_int + Orbiter.ydrag;
+            int x = originX + (int) (OrbitCalculator.scaleFactor * approach.x);
+            int y = originY - (int) (OrbitCalculator.scaleFactor * approach.y);
+            int planetX = originX + (int) (OrbitCalculator.scaleFactor * approach.planetX);
+            int planetY = originY - (int) (OrbitCalculator.scaleFactor * approach.planetY);
+            int radius = approach.planet.radius_int;
+
+            g2d.setColor(approach.planet.color);
+            g2d.drawOval(planetX - radius, planetY - radius, 2 * radius, 2 * radius);
+            g2d.drawLine(x, y, planetX, planetY);
+            g2d.setColor(Color.YELLOW);
+            g2d.drawLine(x - 4, y - 4, x + 4, y + 4);
+            g2d.drawLine(x - 4, y + 4, x + 4, y - 4);
+            g2d.drawString(String.format("%s %.3f km at %.1f", approach.planet.name, approach.distance, approach.time), x + 8, y - 8);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+// an engine burn at a scheduled time, the direction is relative to the velocity like the arrow keys
+public class Burn {
+    public static final double PROGRADE = 0;
+    public static final double LEFT = 0.5 * Math.PI;
+    public static final double RETROGRADE = Math.PI;
+    public static final double RIGHT = 1.5 * Math.PI;
+    public final double startTime, duration, direction;
+    public final int throttleIndex;
+
+    public Burn(double startTime, double duration, double direction, int throttleIndex){
+        this.startTime = startTime;
+        this.duration = duration;
+        this.direction = direction;
+        this.throttleIndex = throttleIndex;
+    }
+
+    public double getEndTime(){
+        return startTime + duration;
+    }
+}
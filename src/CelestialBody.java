@@ -1,4 +1,5 @@
 import java.awt.*;
+import java.util.ArrayList;
 
 public class CelestialBody extends Orbiter{
     protected double radius;
@@ -6,6 +7,7 @@ public class CelestialBody extends Orbiter{
     protected double SOI;
     protected final double mu; // standard gravitational parameter
     protected Color color;
+    protected final ArrayList<Planet> children = new ArrayList<>(); // planets or moons orbiting inside the SOI
 
     public CelestialBody(double radius, double SOI, double mu, Color color, String name){
         super(name);
@@ -20,11 +22,6 @@ public class CelestialBody extends Orbiter{
         radius_int = (int) (OrbitCalculator.scaleFactor * radius);
     }
 
-    public void updatePixelPosition() {
-        x_int = OrbitCalculator.getSun().x_int + (int) Math.round(OrbitCalculator.scaleFactor * position.getX());
-        y_int = OrbitCalculator.getSun().y_int - (int) Math.round(OrbitCalculator.scaleFactor * position.getY());
-    }
-
     public void draw(Graphics2D g2d){
         g2d.setColor(color);
         g2d.fillOval(x_int - radius_int + xdrag, y_int - radius_int + ydrag, 2 * radius_int, 2 * radius_int);
@@ -1,36 +1,71 @@
 import java.awt.*;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 
+// The simulation date is the Julian date of the epoch, the moment the simulation started, plus the simulated time.
+// One orbit of the first planet is a year, so a day is a fixed amount of simulated time and the date follows the
+// clock of the engine exactly at any warp speed.
 public class Date {
-    private Calendar calender;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy");
-    private final StaticOrbit earthOrbit;
-    private final double rotationEarthPerDay;
-    private double referenceAngleEarth;
-
-    public Date(){
-        calender = Calendar.getInstance();
-        earthOrbit = OrbitCalculator.getPlanets().get(0).staticOrbit;
-        rotationEarthPerDay = 2 * Math.PI / 365.256; // = 0.01720214125 rad/day
-        referenceAngleEarth = earthOrbit.getTrueAnomaly();
-    }
-
-    public void update(){
-        if (earthOrbit.getTrueAnomaly() - referenceAngleEarth > rotationEarthPerDay) {
-            int daysPassed = (int) Math.floor((earthOrbit.getTrueAnomaly() - referenceAngleEarth) / rotationEarthPerDay);
-            referenceAngleEarth += daysPassed * rotationEarthPerDay;
-            calender.add(Calendar.DAY_OF_MONTH, daysPassed);
-        }
+    public static final double DAYS_PER_YEAR = 365.256;
+    private static final double UNIX_EPOCH_JULIAN_DATE = 2440587.5; // 01-01-1970 00:00 UTC
+    private static final double MILLIS_PER_DAY = 86400000;
+    private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("dd-MM-yyyy"); // shared, it is immutable
+    private final double daysPerTime;
+    private double epoch; // Julian date at simulation time 0
+    private double time;
+    private final HudText dateText; // the last day that was drawn, shared with the copies and only used on the EDT
+
+    public Date(double yearPeriod){
+        daysPerTime = DAYS_PER_YEAR / yearPeriod;
+        dateText = new HudText();
+        reset(0);
+    }
+
+    public Date(Date date){
+        daysPerTime = date.daysPerTime;
+        epoch = date.epoch;
+        time = date.time;
+        dateText = date.dateText;
+    }
+
+    // a copy at another moment, for replays
+    public Date(Date date, long timeInMillis){
+        this(date);
+        time = (timeInMillis / MILLIS_PER_DAY + UNIX_EPOCH_JULIAN_DATE - epoch) / daysPerTime;
+    }
+
+    public void update(double time){
+        this.time = time;
+    }
+
+    public double getJulianDate(){
+        return epoch + time * daysPerTime;
+    }
+
+    public long getTimeInMillis(){
+        return Math.round((getJulianDate() - UNIX_EPOCH_JULIAN_DATE) * MILLIS_PER_DAY);
+    }
+
+    // days since 01-01-1970, the calendar day changes at midnight UTC
+    public long getDay(){
+        return (long) Math.floor(getJulianDate() - UNIX_EPOCH_JULIAN_DATE);
     }
 
     public void drawUI(Graphics2D g2d, int x){
-        String date = dateFormat.format(calender.getTime());
-        g2d.drawString(date, x - 90, 15);
+        if (dateText.isOutdated(null, getDay())) {
+            dateText.setText(toString());
+        }
+        dateText.draw(g2d, x - 90, 15);
+    }
+
+    @Override
+    public String toString(){
+        return dateFormat.format(LocalDate.ofEpochDay(getDay()));
     }
 
-    public void reset() {
-        calender = Calendar.getInstance();
-        referenceAngleEarth = earthOrbit.getTrueAnomaly();
+    // today at the given simulation time
+    public void reset(double time) {
+        this.time = time;
+        epoch = System.currentTimeMillis() / MILLIS_PER_DAY + UNIX_EPOCH_JULIAN_DATE - time * daysPerTime;
     }
 }
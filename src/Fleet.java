@@ -0,0 +1,422 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+// Coasting spacecraft in bulk, e.g. a satellite constellation or a cloud of debris. Each craft flies a conic like the
+// spacecraft, but its state is kept in one array per element instead of in objects, and the craft are updated in
+// parallel chunks. A craft only checks the children of the body it orbits and only when its orbit can reach them. It
+// also skips the checks until it and the children could have covered the distance to the nearest SOI, so a long step,
+// like a jump to the next event, costs little for craft far from the children. A craft that crashes or leaves the SOI
+// of the star is removed.
+// Headless timing: java Fleet <craft> [steps] [warp index] [seed]
+public class Fleet {
+    private static final int CHUNK_SIZE = 1024; // craft per parallel task
+    private static final double CHECK_STEP = 0.02; // time between SOI checks, an SOI grazed in between is missed
+    private static final double ENTRY_TOLERANCE = 1e-9;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int REMOVED = -1;
+
+    private final CelestialBody[] bodies; // the sun and then the planets in the order of getPlanets
+    private final Planet[] planets;
+    private final int[] parents; // body index of the parent of each body, -1 for the sun
+    private final int[][] children; // body indices of the children of each body
+    private final double[] maxChildSpeed; // the highest speed of any child of each body relative to the body
+    private int count;
+
+    // the conic of each craft, relative to the body it orbits, see Orbit
+    private int[] body;
+    private double[] semiLatusRectum, eccentricity, argumentOfPeriapsis, meanMotion, velocityFactor, direction;
+    private double[] timeSincePeriapsisStart, period, endTime;
+    private boolean[] isOnEscapePath, reachesChild;
+    private double[] orbitTime; // time since the orbit was last recalculated
+    private double[] x, y, vx, vy; // state relative to the body it orbits
+
+    private int checks; // in the current update
+    private double checkStep;
+
+    public Fleet(Star sun, ArrayList<Planet> planets) {
+        this.planets = planets.toArray(new Planet[0]);
+        bodies = new CelestialBody[planets.size() + 1];
+        bodies[0] = sun;
+        parents = new int[bodies.length];
+        parents[0] = -1;
+        for (int i = 0; i < planets.size(); i++) {
+            bodies[i + 1] = planets.get(i);
+            parents[i + 1] = indexOf(planets.get(i).parent);
+        }
+        children = new int[bodies.length][];
+        maxChildSpeed = new double[bodies.length];
+        for (int i = 0; i < bodies.length; i++) {
+            children[i] = new int[bodies[i].children.size()];
+            for (int j = 0; j < children[i].length; j++) {
+                children[i][j] = indexOf(bodies[i].children.get(j));
+                maxChildSpeed[i] = Math.max(maxChildSpeed[i], bodies[i].children.get(j).staticOrbit.getMaxSpeed());
+            }
+        }
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public static void main(String[] args) {
+        int craft = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int warpIndex = args.length > 2 ? Integer.parseInt(args[2]) : Orbiter.WARP_SPEEDS.length - 1;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        SimulationEngine engine = new SimulationEngine(seed);
+        engine.setWarpIndex(warpIndex);
+        engine.getFleet().addConstellation(engine.getPlanets().get(0), craft, new Random(seed));
+        long beginTime = System.currentTimeMillis();
+        engine.step(steps);
+        long endTime = System.currentTimeMillis();
+        System.out.print(Profiler.summary());
+        System.out.println(engine.getFleet().size() + " of " + craft + " craft left, " + steps + " steps in " + (endTime - beginTime)
+                + " ms = " + (endTime - beginTime) / (double) steps + " ms per step");
+    }
+
+    private int indexOf(CelestialBody celestialBody) {
+        for (int i = 0; i < bodies.length; i++) {
+            if (bodies[i] == celestialBody) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private void allocate(int capacity) {
+        body = body == null ? new int[capacity] : Arrays.copyOf(body, capacity);
+        semiLatusRectum = grow(semiLatusRectum, capacity);
+        eccentricity = grow(eccentricity, capacity);
+        argumentOfPeriapsis = grow(argumentOfPeriapsis, capacity);
+        meanMotion = grow(meanMotion, capacity);
+        velocityFactor = grow(velocityFactor, capacity);
+        direction = grow(direction, capacity);
+        timeSincePeriapsisStart = grow(timeSincePeriapsisStart, capacity);
+        period = grow(period, capacity);
+        endTime = grow(endTime, capacity);
+        isOnEscapePath = isOnEscapePath == null ? new boolean[capacity] : Arrays.copyOf(isOnEscapePath, capacity);
+        reachesChild = reachesChild == null ? new boolean[capacity] : Arrays.copyOf(reachesChild, capacity);
+        orbitTime = grow(orbitTime, capacity);
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        vx = grow(vx, capacity);
+        vy = grow(vy, capacity);
+    }
+
+    private static double[] grow(double[] array, int capacity) {
+        return array == null ? new double[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    // adds a craft with a state relative to a body, returns its index
+    public int add(CelestialBody celestialBody, Vector position, Vector velocity) {
+        if (count == body.length) {
+            allocate(2 * count);
+        }
+        int i = count++;
+        body[i] = indexOf(celestialBody);
+        recalculate(i, position.getX(), position.getY(), velocity.getX(), velocity.getY());
+        updateState(i);
+        return i;
+    }
+
+    // craft on nearly circular orbits, spread from just above the surface to halfway to the edge of the SOI or to
+    // below the closest moon, flying the same way around as the spacecraft
+    public void addConstellation(CelestialBody celestialBody, int craft, Random random) {
+        double minDistance = 1.5 * celestialBody.radius;
+        double maxDistance = 0.5 * celestialBody.SOI;
+        for (Planet moon : celestialBody.children) {
+            maxDistance = Math.min(maxDistance, 0.9 * (moon.staticOrbit.getMinDistance() - moon.SOI));
+        }
+        maxDistance = Math.max(minDistance, maxDistance);
+
+        Vector position = new Vector(0, 0);
+        Vector velocity = new Vector(0, 0);
+        for (int i = 0; i < craft; i++) {
+            double distance = minDistance + (maxDistance - minDistance) * random.nextDouble();
+            double angle = 2 * Math.PI * random.nextDouble();
+            double speed = Math.sqrt(celestialBody.mu / distance) * (1 + 0.02 * random.nextGaussian());
+            position.setVectorFromRadiusAndAngle(distance, angle);
+            velocity.setVectorFromRadiusAndAngle(speed, angle - 0.5 * Math.PI);
+            add(celestialBody, position, velocity);
+        }
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // The planets have already been moved to the end of the step. The craft are updated in chunks, which only write to
+    // the elements of their own craft.
+    public void update(double timeStep) {
+        if (count == 0) {
+            return;
+        }
+        checks = (int) Math.max(1, Math.ceil(timeStep / CHECK_STEP));
+        checkStep = timeStep / checks;
+        IntStream.range(0, (count + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+            Vector position = new Vector(0, 0);
+            Vector velocity = new Vector(0, 0);
+            Vector planetPosition = new Vector(0, 0);
+            Vector planetVelocity = new Vector(0, 0);
+            for (int i = chunk * CHUNK_SIZE; i < Math.min(count, (chunk + 1) * CHUNK_SIZE); i++) {
+                update(i, timeStep, position, velocity, planetPosition, planetVelocity);
+            }
+        });
+        removeCrashed();
+    }
+
+    // times are measured from the start of the step, the craft is at orbit time orbitTime[i] at the time start
+    private void update(int i, double timeStep, Vector position, Vector velocity, Vector planetPosition, Vector planetVelocity) {
+        double start = 0;
+        while (true) {
+            double end = start + endTime[i] - orbitTime[i]; // time at which the orbit ends
+            int child = -1;
+            double entry = Double.POSITIVE_INFINITY;
+            if (reachesChild[i]) {
+                double maxSpeed = velocityFactor[i] * (1 + eccentricity[i]) + maxChildSpeed[body[i]]; // at which an SOI can come closer
+                for (int k = (int) (start / checkStep); k < checks && (k + 1) * checkStep <= end; ) {
+                    double time = (k + 1) * checkStep;
+                    updateState(i, orbitTime[i] + time - start, position, velocity);
+                    double clearance = getClearance(i, time - timeStep, position, planetPosition, planetVelocity);
+                    if (clearance < 0) {
+                        child = findChild(i, time - timeStep, position, planetPosition, planetVelocity);
+                        entry = findEntry(i, child, start, Math.max(start, k * checkStep), time, timeStep, position, velocity, planetPosition, planetVelocity);
+                        break;
+                    }
+                    // the checks before the craft can have reached the nearest SOI are skipped, the first one after is made
+                    k = (int) Math.max(k + 1, Math.min(checks, Math.floor((time + clearance / maxSpeed) / checkStep)));
+                }
+            }
+
+            if (child >= 0) {
+                // continue around the child from the entry
+                updateState(i, orbitTime[i] + entry - start, position, velocity);
+                planets[child - 1].staticOrbit.getStateAfter(entry - timeStep, planetPosition, planetVelocity);
+                body[i] = child;
+                recalculate(i, position.getX() - planetPosition.getX(), position.getY() - planetPosition.getY(),
+                        velocity.getX() - planetVelocity.getX(), velocity.getY() - planetVelocity.getY());
+                start = entry;
+            } else if (end <= timeStep) {
+                if (!isOnEscapePath[i] || body[i] == 0) {
+                    body[i] = REMOVED; // crashed or lost
+                    return;
+                }
+                // continue around the parent from the exit
+                updateState(i, endTime[i], position, velocity);
+                planets[body[i] - 1].staticOrbit.getStateAfter(end - timeStep, planetPosition, planetVelocity);
+                body[i] = parents[body[i]];
+                recalculate(i, position.getX() + planetPosition.getX(), position.getY() + planetPosition.getY(),
+                        velocity.getX() + planetVelocity.getX(), velocity.getY() + planetVelocity.getY());
+                start = end;
+            } else {
+                orbitTime[i] += timeStep - start;
+                if (period[i] < Double.POSITIVE_INFINITY && orbitTime[i] >= period[i]) {
+                    orbitTime[i] %= period[i];
+                }
+                updateState(i);
+                return;
+            }
+        }
+    }
+
+    // Distance from the craft to the nearest SOI of a child of the orbited body, negative inside one. The planet time is
+    // relative to the end of the step. Children that never come near the distance of the craft to the orbited body
+    // count with the distance to the ring they stay in, without solving their position.
+    private double getClearance(int i, double planetTime, Vector position, Vector planetPosition, Vector planetVelocity) {
+        double distance = position.getAbs();
+        double clearance = Double.POSITIVE_INFINITY;
+        for (int child : children[body[i]]) {
+            Planet planet = planets[child - 1];
+            double inside = planet.staticOrbit.getMinDistance() - planet.SOI - distance;
+            double outside = distance - planet.staticOrbit.getMaxDistance() - planet.SOI;
+            if (inside > 0 || outside > 0) {
+                clearance = Math.min(clearance, Math.max(inside, outside));
+                continue;
+            }
+            planet.staticOrbit.getStateAfter(planetTime, planetPosition, planetVelocity);
+            double dx = position.getX() - planetPosition.getX();
+            double dy = position.getY() - planetPosition.getY();
+            clearance = Math.min(clearance, Math.sqrt(dx * dx + dy * dy) - planet.SOI);
+        }
+        return clearance;
+    }
+
+    // the child of the orbited body whose SOI the craft is inside, -1 if none
+    private int findChild(int i, double planetTime, Vector position, Vector planetPosition, Vector planetVelocity) {
+        for (int child : children[body[i]]) {
+            Planet planet = planets[child - 1];
+            planet.staticOrbit.getStateAfter(planetTime, planetPosition, planetVelocity);
+            double dx = position.getX() - planetPosition.getX();
+            double dy = position.getY() - planetPosition.getY();
+            if (dx * dx + dy * dy < planet.SOI * planet.SOI) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    // bisection on the distance to the edge of the SOI between a time outside and a time inside
+    private double findEntry(int i, int child, double start, double outside, double inside, double timeStep,
+                             Vector position, Vector velocity, Vector planetPosition, Vector planetVelocity) {
+        Planet planet = planets[child - 1];
+        while (inside - outside > ENTRY_TOLERANCE) {
+            double time = 0.5 * (outside + inside);
+            updateState(i, orbitTime[i] + time - start, position, velocity);
+            planet.staticOrbit.getStateAfter(time - timeStep, planetPosition, planetVelocity);
+            double dx = position.getX() - planetPosition.getX();
+            double dy = position.getY() - planetPosition.getY();
+            if (dx * dx + dy * dy < planet.SOI * planet.SOI) {
+                inside = time;
+            } else {
+                outside = time;
+            }
+        }
+        return inside;
+    }
+
+    // Orbit.recalculate on the elements of one craft, the orbit time starts at 0
+    private void recalculate(int i, double px, double py, double pvx, double pvy) {
+        CelestialBody celestialBody = bodies[body[i]];
+        double mu = celestialBody.mu;
+        double distance = Math.sqrt(px * px + py * py);
+        double speed2 = pvx * pvx + pvy * pvy;
+
+        double angularMomentum = px * pvy - py * pvx;
+        direction[i] = angularMomentum < 0 ? -1 : 1;
+        double semiMajorAxis = distance / (2 - distance * speed2 / mu);
+
+        double radialFactor = speed2 - mu / distance;
+        double velocityProduct = px * pvx + py * pvy;
+        double eX = radialFactor * px - velocityProduct * pvx;
+        double eY = radialFactor * py - velocityProduct * pvy;
+        double e = Math.sqrt(eX * eX + eY * eY) / mu;
+        double p = angularMomentum * angularMomentum / mu;
+        double n = Math.sqrt(mu / Math.abs(semiMajorAxis * semiMajorAxis * semiMajorAxis));
+        eccentricity[i] = e;
+        argumentOfPeriapsis[i] = Math.atan2(eY, eX);
+        semiLatusRectum[i] = p;
+        velocityFactor[i] = mu / Math.abs(angularMomentum);
+        meanMotion[i] = n;
+        period[i] = e < 1 ? 2 * Math.PI / n : Double.POSITIVE_INFINITY;
+
+        double trueAnomalyStart = Math.IEEEremainder(direction[i] * (Math.atan2(py, px) - argumentOfPeriapsis[i]), 2 * Math.PI);
+        timeSincePeriapsisStart[i] = Kepler.timeSincePeriapsis(trueAnomalyStart, e, n);
+
+        double minDistance = p / (1 + e);
+        double apoapsis = semiMajorAxis * (1 + e);
+        boolean crashPossible = minDistance < celestialBody.radius;
+        boolean escapePossible = e >= 1 || apoapsis > celestialBody.SOI;
+        double crashAnomaly = crashPossible ? trueAnomalyAtDistance(p, e, celestialBody.radius) : 0;
+        double end;
+        isOnEscapePath[i] = false;
+        if (crashPossible && trueAnomalyStart < 0) {
+            end = Kepler.timeSincePeriapsis(-crashAnomaly, e, n) - timeSincePeriapsisStart[i];
+        } else if (escapePossible) {
+            isOnEscapePath[i] = true;
+            end = Kepler.timeSincePeriapsis(trueAnomalyAtDistance(p, e, celestialBody.SOI), e, n) - timeSincePeriapsisStart[i];
+        } else if (crashPossible) {
+            end = Kepler.timeSincePeriapsis(-crashAnomaly, e, n) + period[i] - timeSincePeriapsisStart[i];
+        } else {
+            end = Double.POSITIVE_INFINITY;
+        }
+        endTime[i] = Math.max(0, end);
+        orbitTime[i] = 0;
+
+        // a child can only be met if its distances to the orbited body overlap with those of the orbit
+        double maxDistance = isOnEscapePath[i] ? celestialBody.SOI : apoapsis;
+        reachesChild[i] = false;
+        for (int child : children[body[i]]) {
+            Planet planet = planets[child - 1];
+            if (planet.staticOrbit.getMinDistance() - planet.SOI < maxDistance && planet.staticOrbit.getMaxDistance() + planet.SOI > minDistance) {
+                reachesChild[i] = true;
+            }
+        }
+    }
+
+    private static double trueAnomalyAtDistance(double semiLatusRectum, double eccentricity, double distance) {
+        double argument = (semiLatusRectum / distance - 1) / eccentricity;
+        return argument < -1 ? Math.PI : argument > 1 ? 0 : Math.acos(argument);
+    }
+
+    // Orbit.updateState on the elements of one craft
+    private void updateState(int i, double time, Vector position, Vector velocity) {
+        double e = eccentricity[i];
+        double trueAnomaly = Kepler.trueAnomaly(meanMotion[i] * (timeSincePeriapsisStart[i] + time), e);
+        double distance = semiLatusRectum[i] / (1 + e * Math.cos(trueAnomaly));
+        double angle = argumentOfPeriapsis[i] + direction[i] * trueAnomaly;
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        position.set(distance * cos, distance * sin);
+
+        double radialVelocity = velocityFactor[i] * e * Math.sin(trueAnomaly);
+        double transverseVelocity = direction[i] * velocityFactor[i] * (1 + e * Math.cos(trueAnomaly));
+        velocity.set(radialVelocity * cos - transverseVelocity * sin, radialVelocity * sin + transverseVelocity * cos);
+    }
+
+    // the state at the current orbit time, without vectors
+    private void updateState(int i) {
+        double e = eccentricity[i];
+        double trueAnomaly = Kepler.trueAnomaly(meanMotion[i] * (timeSincePeriapsisStart[i] + orbitTime[i]), e);
+        double distance = semiLatusRectum[i] / (1 + e * Math.cos(trueAnomaly));
+        double angle = argumentOfPeriapsis[i] + direction[i] * trueAnomaly;
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        x[i] = distance * cos;
+        y[i] = distance * sin;
+
+        double radialVelocity = velocityFactor[i] * e * Math.sin(trueAnomaly);
+        double transverseVelocity = direction[i] * velocityFactor[i] * (1 + e * Math.cos(trueAnomaly));
+        vx[i] = radialVelocity * cos - transverseVelocity * sin;
+        vy[i] = radialVelocity * sin + transverseVelocity * cos;
+    }
+
+    // removes the craft that crashed or were lost in this step, the remaining craft keep their order
+    private void removeCrashed() {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (body[i] != REMOVED) {
+                move(i, kept++);
+            }
+        }
+        count = kept;
+    }
+
+    private void move(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        body[to] = body[from];
+        semiLatusRectum[to] = semiLatusRectum[from];
+        eccentricity[to] = eccentricity[from];
+        argumentOfPeriapsis[to] = argumentOfPeriapsis[from];
+        meanMotion[to] = meanMotion[from];
+        velocityFactor[to] = velocityFactor[from];
+        direction[to] = direction[from];
+        timeSincePeriapsisStart[to] = timeSincePeriapsisStart[from];
+        period[to] = period[from];
+        endTime[to] = endTime[from];
+        isOnEscapePath[to] = isOnEscapePath[from];
+        reachesChild[to] = reachesChild[from];
+        orbitTime[to] = orbitTime[from];
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+    }
+
+    // positions relative to the body each craft orbits, the body as an index into getBody
+    public void getPositions(int[] bodies, float[] xs, float[] ys) {
+        System.arraycopy(body, 0, bodies, 0, count);
+        for (int i = 0; i < count; i++) {
+            xs[i] = (float) x[i];
+            ys[i] = (float) y[i];
+        }
+    }
+
+    // 0 for the sun, i + 1 for planet i
+    public CelestialBody getBody(int index) {
+        return bodies[index];
+    }
+}
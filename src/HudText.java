@@ -0,0 +1,75 @@
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+
+// A line of HUD text that is only formatted and laid out again when what it shows changes. The content is identified
+// by a key, for a number the value rounded to the displayed precision, so a value that changes in digits that are not
+// shown costs a comparison. The laid out glyphs are kept until the text, the font or the render context changes.
+// Drawn on the EDT only, like the rest of the HUD.
+public class HudText {
+    private final String format;
+    private final double scale; // 10 to the power of the number of decimals shown
+    private Object object;
+    private long key;
+    private boolean empty = true;
+    private String text;
+    private GlyphVector glyphs;
+    private Font font;
+    private FontRenderContext renderContext;
+
+    // for text that is set by the caller after isOutdated
+    public HudText() {
+        this(null, 0);
+    }
+
+    // for text that never changes
+    public HudText(String text) {
+        this(null, 0);
+        this.text = text;
+        empty = false;
+    }
+
+    // for a number shown with the format, e.g. "Velocity = %.3f km/s" with 3 decimals
+    public HudText(String format, int decimals) {
+        this.format = format;
+        scale = Math.pow(10, decimals);
+    }
+
+    // the number is formatted as it is rounded, so the text always matches the key
+    public void draw(Graphics2D g2d, double value, int x, int y) {
+        long key = Math.round(value * scale);
+        if (isOutdated(null, key)) {
+            setText(String.format(format, key / scale));
+        }
+        draw(g2d, x, y);
+    }
+
+    // whether the content changed since the text was set, the object is compared by identity
+    public boolean isOutdated(Object object, long key) {
+        if (empty || object != this.object || key != this.key) {
+            this.object = object;
+            this.key = key;
+            empty = false;
+            return true;
+        }
+        return false;
+    }
+
+    public void setText(String text) {
+        if (!text.equals(this.text)) {
+            this.text = text;
+            glyphs = null;
+        }
+    }
+
+    public void draw(Graphics2D g2d, int x, int y) {
+        Font font = g2d.getFont();
+        FontRenderContext renderContext = g2d.getFontRenderContext();
+        if (glyphs == null || !font.equals(this.font) || !renderContext.equals(this.renderContext)) {
+            glyphs = font.createGlyphVector(renderContext, text);
+            this.font = font;
+            this.renderContext = renderContext;
+        }
+        g2d.drawGlyphVector(glyphs, x, y);
+    }
+}
@@ -0,0 +1,64 @@
+public class Kepler {
+    private static final double TOLERANCE = 1e-12;
+    private static final int MAX_ITERATIONS = 50;
+
+    private Kepler(){
+    }
+
+    // time since periapsis at a true anomaly measured in the direction of motion
+    public static double timeSincePeriapsis(double trueAnomaly, double eccentricity, double meanMotion){
+        return meanAnomaly(trueAnomaly, eccentricity) / meanMotion;
+    }
+
+    public static double meanAnomaly(double trueAnomaly, double eccentricity){
+        if (eccentricity < 1) {
+            double eccentricAnomaly = 2 * Math.atan2(Math.sqrt(1 - eccentricity) * Math.sin(0.5 * trueAnomaly), Math.sqrt(1 + eccentricity) * Math.cos(0.5 * trueAnomaly));
+            return eccentricAnomaly - eccentricity * Math.sin(eccentricAnomaly);
+        }
+        double hyperbolicAnomaly = 2 * atanh(Math.sqrt((eccentricity - 1) / (eccentricity + 1)) * Math.tan(0.5 * trueAnomaly));
+        return eccentricity * Math.sinh(hyperbolicAnomaly) - hyperbolicAnomaly;
+    }
+
+    public static double trueAnomaly(double meanAnomaly, double eccentricity){
+        if (eccentricity < 1) {
+            double eccentricAnomaly = solveElliptic(Math.IEEEremainder(meanAnomaly, 2 * Math.PI), eccentricity);
+            return 2 * Math.atan2(Math.sqrt(1 + eccentricity) * Math.sin(0.5 * eccentricAnomaly), Math.sqrt(1 - eccentricity) * Math.cos(0.5 * eccentricAnomaly));
+        }
+        double hyperbolicAnomaly = solveHyperbolic(meanAnomaly, eccentricity);
+        return 2 * Math.atan2(Math.sqrt(eccentricity + 1) * Math.sinh(0.5 * hyperbolicAnomaly), Math.sqrt(eccentricity - 1) * Math.cosh(0.5 * hyperbolicAnomaly));
+    }
+
+    // Newton iteration on M = E - e * sin(E)
+    private static double solveElliptic(double meanAnomaly, double eccentricity){
+        double eccentricAnomaly = eccentricity < 0.8 ? meanAnomaly : Math.signum(meanAnomaly) * Math.PI;
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            double error = eccentricAnomaly - eccentricity * Math.sin(eccentricAnomaly) - meanAnomaly;
+            eccentricAnomaly -= error / (1 - eccentricity * Math.cos(eccentricAnomaly));
+            if (Math.abs(error) < TOLERANCE) {
+                break;
+            }
+        }
+        return eccentricAnomaly;
+    }
+
+    // Newton iteration on M = e * sinh(H) - H
+    private static double solveHyperbolic(double meanAnomaly, double eccentricity){
+        double hyperbolicAnomaly = asinh(meanAnomaly / eccentricity);
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            double error = eccentricity * Math.sinh(hyperbolicAnomaly) - hyperbolicAnomaly - meanAnomaly;
+            hyperbolicAnomaly -= error / (eccentricity * Math.cosh(hyperbolicAnomaly) - 1);
+            if (Math.abs(error) < TOLERANCE) {
+                break;
+            }
+        }
+        return hyperbolicAnomaly;
+    }
+
+    private static double atanh(double x){
+        return 0.5 * Math.log((1 + x) / (1 - x));
+    }
+
+    private static double asinh(double x){
+        return Math.signum(x) * Math.log(Math.abs(x) + Math.sqrt(x * x + 1));
+    }
+}
@@ -0,0 +1,86 @@
+// Lambert's problem with universal variables: the conic from r1 to r2 in a given time of flight
+public class Lambert {
+    private static final int MAX_ITERATIONS = 100;
+    private static final double TOLERANCE = 1e-10;
+
+    private Lambert(){
+    }
+
+    // velocities at r1 and r2 of the counter clockwise transfer of less than one revolution, false if there is none
+    public static boolean solve(Vector r1, Vector r2, double timeOfFlight, double mu, Vector v1, Vector v2){
+        double distance1 = r1.getAbs();
+        double distance2 = r2.getAbs();
+        double cosTransferAngle = r1.dotMultiplication(r2) / (distance1 * distance2);
+        double transferAngle = Math.acos(Math.max(-1, Math.min(1, cosTransferAngle)));
+        if (r1.crossMultiplication(r2) < 0) {
+            transferAngle = 2 * Math.PI - transferAngle;
+        }
+
+        double a = Math.sin(transferAngle) * Math.sqrt(distance1 * distance2 / (1 - Math.cos(transferAngle)));
+        if (!(Math.abs(a) > 1e-12)) {
+            return false; // transfer angle of 0 or 180 degrees, the plane of the transfer is undefined
+        }
+
+        // bisection on z, the time of flight increases with z for single revolution transfers
+        double zLow = -4 * Math.PI * Math.PI;
+        double zHigh = 4 * Math.PI * Math.PI;
+        double z = 0;
+        double y = 0;
+        double time = Double.NaN;
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            z = 0.5 * (zLow + zHigh);
+            y = y(z, distance1, distance2, a);
+            time = y < 0 ? Double.NEGATIVE_INFINITY : time(z, y, a, mu);
+            if (time < timeOfFlight) {
+                zLow = z;
+            } else {
+                zHigh = z;
+            }
+            if (Math.abs(time - timeOfFlight) < TOLERANCE * timeOfFlight) {
+                break;
+            }
+        }
+        if (y < 0 || !(Math.abs(time - timeOfFlight) < TOLERANCE * timeOfFlight)) {
+            return false; // the time of flight lies outside the bracket of z
+        }
+
+        // Lagrange coefficients
+        double f = 1 - y / distance1;
+        double g = a * Math.sqrt(y / mu);
+        double gDot = 1 - y / distance2;
+        v1.setX((r2.getX() - f * r1.getX()) / g);
+        v1.setY((r2.getY() - f * r1.getY()) / g);
+        v2.setX((gDot * r2.getX() - r1.getX()) / g);
+        v2.setY((gDot * r2.getY() - r1.getY()) / g);
+        return true;
+    }
+
+    private static double y(double z, double distance1, double distance2, double a){
+        return distance1 + distance2 + a * (z * stumpffS(z) - 1) / Math.sqrt(stumpffC(z));
+    }
+
+    private static double time(double z, double y, double a, double mu){
+        double x = Math.sqrt(y / stumpffC(z));
+        return (x * x * x * stumpffS(z) + a * Math.sqrt(y)) / Math.sqrt(mu);
+    }
+
+    private static double stumpffC(double z){
+        if (z > 1e-6) {
+            return (1 - Math.cos(Math.sqrt(z))) / z;
+        } else if (z < -1e-6) {
+            return (Math.cosh(Math.sqrt(-z)) - 1) / -z;
+        }
+        return 0.5 - z / 24;
+    }
+
+    private static double stumpffS(double z){
+        if (z > 1e-6) {
+            double sqrtZ = Math.sqrt(z);
+            return (sqrtZ - Math.sin(sqrtZ)) / (sqrtZ * sqrtZ * sqrtZ);
+        } else if (z < -1e-6) {
+            double sqrtZ = Math.sqrt(-z);
+            return (Math.sinh(sqrtZ) - sqrtZ) / (sqrtZ * sqrtZ * sqrtZ);
+        }
+        return 1.0 / 6 - z / 120;
+    }
+}
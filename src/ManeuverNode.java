@@ -0,0 +1,220 @@
+import java.awt.*;
+
+// A planned impulsive burn at a future time on the orbit of the spacecraft, with delta v along the velocity
+// (prograde) and perpendicular to it (radial out). The preview is the conic after the burn and, when that conic
+// leaves the SOI or enters the SOI of a child, the conic after the change of SOI. The real flight is not changed.
+// The node lives on the physics thread, the renderer draws a copy that is taken for the snapshots.
+public class ManeuverNode {
+    public static final int PROGRADE_HANDLE = 0, RADIAL_HANDLE = 1;
+    public static final double PIXELS_PER_DELTA_V = 1000; // how far a handle moves per km/s
+    private static final int HANDLE_OFFSET = 30; // pixels between the node and a handle without delta v
+
+    private final Spacecraft spacecraft; // the live spacecraft, null for copies
+    private final Spacecraft preview; // flies the conic after the burn to search it for SOI entries, null for copies
+    public final Orbit orbit; // after the burn
+    private final Orbit next; // after the first change of SOI along the orbit
+    private boolean hasNext, leavesSOI;
+    private double time; // engine time of the burn
+    private double prograde, radial;
+
+    // state on the orbit of the spacecraft at the node, before the burn
+    private CelestialBody body;
+    private final Vector position = new Vector(0, 0);
+    private final Vector velocity = new Vector(0, 0);
+    private double progradeX, progradeY, radialX, radialY; // unit vectors, radial out is on the side away from the body
+    private final Vector burnVelocity = new Vector(0, 0);
+    private final Vector changePosition = new Vector(0, 0); // state at the change of SOI
+    private final Vector changeVelocity = new Vector(0, 0);
+    private final Vector planetPosition = new Vector(0, 0);
+    private final Vector planetVelocity = new Vector(0, 0);
+
+    // The state at the node only depends on the orbit of the spacecraft and the time of the node, so changing the
+    // delta v only recalculates the conics after the burn. Nothing is done while neither changes.
+    private Orbit stateOrbit;
+    private int stateRevision;
+    private boolean stateOutdated = true, previewOutdated = true;
+    private int revision; // incremented every time the preview changes
+    private ManeuverNode copy;
+
+    public ManeuverNode(Spacecraft spacecraft, double time) {
+        this.spacecraft = spacecraft;
+        this.time = time;
+        preview = new Spacecraft(spacecraft, new Orbit(spacecraft.orbit));
+        orbit = preview.orbit;
+        next = new Orbit(spacecraft.orbit.celestialBody);
+    }
+
+    // copy that is drawn, it is not updated any more
+    private ManeuverNode(ManeuverNode node) {
+        spacecraft = null;
+        preview = null;
+        orbit = new Orbit(node.orbit);
+        next = new Orbit(node.next);
+        hasNext = node.hasNext;
+        leavesSOI = node.leavesSOI;
+        time = node.time;
+        prograde = node.prograde;
+        radial = node.radial;
+        body = node.body;
+        position.set(node.position);
+        velocity.set(node.velocity);
+        progradeX = node.progradeX;
+        progradeY = node.progradeY;
+        radialX = node.radialX;
+        radialY = node.radialY;
+        revision = node.revision;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    // the node stays between now and the end of the orbit of the spacecraft
+    public void setTime(double time, double now) {
+        double end = now + spacecraft.orbit.endTime - spacecraft.getOrbitTime();
+        this.time = Math.max(now, Math.min(end, time));
+        stateOutdated = true;
+    }
+
+    public double getPrograde() {
+        return prograde;
+    }
+
+    public double getRadial() {
+        return radial;
+    }
+
+    public void setDeltaV(double prograde, double radial) {
+        this.prograde = prograde;
+        this.radial = radial;
+        previewOutdated = true;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    // false once the time of the node has passed or it lies beyond the end of the orbit
+    public boolean update(double now) {
+        double timeAhead = time - now;
+        double orbitTime = spacecraft.getOrbitTime() + timeAhead;
+        if (timeAhead <= 0 || orbitTime > spacecraft.orbit.endTime) {
+            return false;
+        }
+        if (spacecraft.isInPoweredFlight()) {
+            return true; // the orbit is only recalculated at engine cutoff
+        }
+
+        if (stateOutdated || stateOrbit != spacecraft.orbit || stateRevision != spacecraft.orbit.getRevision()) {
+            spacecraft.orbit.updateState(orbitTime, position, velocity);
+            body = spacecraft.orbit.celestialBody;
+            stateOrbit = spacecraft.orbit;
+            stateRevision = spacecraft.orbit.getRevision();
+            stateOutdated = false;
+            previewOutdated = true;
+        }
+        if (previewOutdated) {
+            updatePreview(timeAhead);
+            previewOutdated = false;
+            revision++;
+            copy = null;
+        }
+        return true;
+    }
+
+    private void updatePreview(double timeAhead) {
+        double speed = velocity.getAbs();
+        progradeX = velocity.getX() / speed;
+        progradeY = velocity.getY() / speed;
+        radialX = progradeY;
+        radialY = -progradeX;
+        if (radialX * position.getX() + radialY * position.getY() < 0) {
+            radialX = -radialX;
+            radialY = -radialY;
+        }
+        burnVelocity.set(velocity.getX() + prograde * progradeX + radial * radialX, velocity.getY() + prograde * progradeY + radial * radialY);
+
+        preview.orbit.celestialBody = body;
+        preview.planManeuver(position, burnVelocity, timeAhead);
+
+        // the planets are taken to where they will be at the change of SOI
+        Planet encounter = preview.getEncounterPlanet();
+        hasNext = encounter != null || orbit.isOnEscapePath && orbit.celestialBody instanceof Planet;
+        leavesSOI = encounter == null;
+        if (encounter != null) {
+            double encounterTime = preview.getEncounterTime();
+            orbit.updateState(encounterTime, changePosition, changeVelocity);
+            encounter.staticOrbit.getStateAfter(timeAhead + encounterTime, planetPosition, planetVelocity);
+            next.celestialBody = encounter;
+            next.recalculate(changePosition.subtract(planetPosition, changePosition), changeVelocity.subtract(planetVelocity, changeVelocity));
+        } else if (hasNext) {
+            Planet planet = (Planet) orbit.celestialBody;
+            orbit.updateState(orbit.endTime, changePosition, changeVelocity);
+            planet.staticOrbit.getStateAfter(timeAhead + orbit.endTime, planetPosition, planetVelocity);
+            next.celestialBody = planet.parent;
+            next.recalculate(changePosition.add(planetPosition, changePosition), changeVelocity.add(planetVelocity, changeVelocity));
+        }
+    }
+
+    // the copy is shared by the snapshots until the preview changes
+    public ManeuverNode getCopy() {
+        if (copy == null) {
+            copy = new ManeuverNode(this);
+        }
+        return copy;
+    }
+
+    public int getPixelX() {
+        return body.x_int + (int) (OrbitCalculator.scaleFactor * position.getX()) + Orbiter.xdrag;
+    }
+
+    public int getPixelY() {
+        return body.y_int - (int) (OrbitCalculator.scaleFactor * position.getY()) + Orbiter.ydrag;
+    }
+
+    // unit vector of a handle on the screen, y pointing down
+    public double getHandleDirectionX(int handle) {
+        return handle == PROGRADE_HANDLE ? progradeX : radialX;
+    }
+
+    public double getHandleDirectionY(int handle) {
+        return handle == PROGRADE_HANDLE ? -progradeY : -radialY;
+    }
+
+    public double getHandleDistance(int handle) {
+        return HANDLE_OFFSET + PIXELS_PER_DELTA_V * (handle == PROGRADE_HANDLE ? prograde : radial);
+    }
+
+    public int getHandleX(int handle) {
+        return getPixelX() + (int) Math.round(getHandleDistance(handle) * getHandleDirectionX(handle));
+    }
+
+    public int getHandleY(int handle) {
+        return getPixelY() + (int) Math.round(getHandleDistance(handle) * getHandleDirectionY(handle));
+    }
+
+    public void draw(Graphics2D g2d, Rectangle visible, double now) {
+        g2d.setColor(Color.ORANGE);
+        orbit.draw(g2d, visible);
+        if (hasNext) {
+            g2d.setColor(Color.MAGENTA);
+            next.draw(g2d, visible);
+        }
+
+        int x = getPixelX(), y = getPixelY();
+        g2d.setColor(Color.ORANGE);
+        g2d.drawOval(x - 5, y - 5, 10, 10);
+        g2d.setColor(Color.GREEN);
+        g2d.drawLine(x, y, getHandleX(PROGRADE_HANDLE), getHandleY(PROGRADE_HANDLE));
+        g2d.fillRect(getHandleX(PROGRADE_HANDLE) - 4, getHandleY(PROGRADE_HANDLE) - 4, 9, 9);
+        g2d.setColor(Color.CYAN);
+        g2d.drawLine(x, y, getHandleX(RADIAL_HANDLE), getHandleY(RADIAL_HANDLE));
+        g2d.fillRect(getHandleX(RADIAL_HANDLE) - 4, getHandleY(RADIAL_HANDLE) - 4, 9, 9);
+
+        g2d.setColor(Color.WHITE);
+        g2d.drawString(String.format("Burn in %.2f: prograde %.3f, radial %.3f km/s", time - now, prograde, radial), x + 10, y + 20);
+        if (hasNext) {
+            g2d.drawString(leavesSOI ? "Leaves the SOI of " + orbit.celestialBody.name : "Enters the SOI of " + next.celestialBody.name, x + 10, y + 35);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Runs independent simulations of a departure burn in parallel, each with its own seed and burn schedule:
+// java MonteCarloSweep <runs> [maximum time of flight] [seed]
+public class MonteCarloSweep {
+    private static final int WARP_INDEX = 2; // highest warp speed at which the engine can be fired
+
+    public static class Outcome {
+        public String soiReached; // name of the first SOI entered, null if none was reached
+        public boolean crashed, lost;
+        public double fuelRemaining, timeOfFlight;
+    }
+
+    public static void main(String[] args) {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double maxTime = args.length > 1 ? Double.parseDouble(args[1]) : 200;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        long beginTime = System.currentTimeMillis();
+        List<Outcome> outcomes = sweep(runs, maxTime, seed);
+        long endTime = System.currentTimeMillis();
+
+        TreeMap<String, Integer> soiCounts = new TreeMap<>();
+        int crashed = 0, lost = 0;
+        double fuel = 0, timeOfFlight = 0;
+        for (Outcome outcome : outcomes) {
+            if (outcome.soiReached != null) {
+                soiCounts.merge(outcome.soiReached, 1, Integer::sum);
+                timeOfFlight += outcome.timeOfFlight;
+            }
+            crashed += outcome.crashed ? 1 : 0;
+            lost += outcome.lost ? 1 : 0;
+            fuel += outcome.fuelRemaining;
+        }
+        int reached = soiCounts.values().stream().mapToInt(Integer::intValue).sum();
+
+        System.out.println(runs + " runs in " + (endTime - beginTime) + " ms on " + ForkJoinPool.getCommonPoolParallelism() + " worker threads");
+        soiCounts.forEach((name, count) -> System.out.println("Reached " + name + " SOI: " + count));
+        System.out.println("Crashed: " + crashed);
+        System.out.println("Lost: " + lost);
+        System.out.println("No event before t = " + maxTime + ": " + (runs - reached - crashed - lost));
+        System.out.println(String.format(Locale.ROOT, "Mean fuel remaining = %.1f", fuel / runs));
+        if (reached > 0) {
+            System.out.println(String.format(Locale.ROOT, "Mean time of flight to SOI = %.3f", timeOfFlight / reached));
+        }
+    }
+
+    // random departure burns from the starting orbit: start time within one orbit, throttle and duration vary
+    // the runs are split over the common fork-join pool
+    public static List<Outcome> sweep(int runs, double maxTime, long seed) {
+        return IntStream.range(0, runs).parallel().mapToObj(run -> {
+            Random random = new Random(seed + run);
+            ArrayList<Burn> burns = new ArrayList<>();
+            burns.add(new Burn(3 * random.nextDouble(), 0.1 * random.nextDouble(), Burn.PROGRADE, 1 + random.nextInt(11)));
+            return simulate(random.nextLong(), burns, maxTime);
+        }).toList();
+    }
+
+    // runs until the first SOI entry, a crash, leaving the sun's SOI or the maximum time
+    public static Outcome simulate(long seed, List<Burn> burns, double maxTime) {
+        SimulationEngine engine = new SimulationEngine(seed);
+        engine.setWarpIndex(WARP_INDEX);
+        for (Burn burn : burns) {
+            engine.addBurn(burn);
+        }
+
+        Outcome outcome = new Outcome();
+        boolean[] finished = {false};
+        engine.addListener((event, body, time) -> {
+            switch (event) {
+                case SOI_ENTRY -> outcome.soiReached = body.name;
+                case CRASH -> outcome.crashed = true;
+                case LOST -> outcome.lost = true;
+                default -> {
+                    return;
+                }
+            }
+            // the spacecraft is reset right after a crash, so its state is recorded here
+            outcome.fuelRemaining = engine.getSpacecraft().getFuelMass();
+            outcome.timeOfFlight = time;
+            finished[0] = true;
+        });
+
+        while (!finished[0] && engine.getTime() < maxTime) {
+            engine.step(1);
+        }
+        if (!finished[0]) {
+            outcome.fuelRemaining = engine.getSpacecraft().getFuelMass();
+            outcome.timeOfFlight = engine.getTime();
+        }
+        return outcome;
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+// Optional N-body model: the sun, the planets, the spacecraft and a belt of asteroids all attract each other.
+// Forces come from a Barnes-Hut tree and are computed in parallel, the bodies move with a leapfrog integrator.
+// Headless timing: java NBody <asteroids> [steps] [seed]
+public class NBody {
+    private static final double THETA = 0.7; // opening angle, larger is faster and less accurate
+    private static final double SOFTENING = 1e-3;
+    private static final double ASTEROID_MU = 1e-9;
+    private static final int CHUNK_SIZE = 1024; // bodies per parallel task
+    public final int count, majorBodies; // the sun, the planets and the spacecraft come first, in that order
+    private final double[] x, y, vx, vy, ax, ay, mu;
+    private final QuadTree tree = new QuadTree();
+
+    public NBody(SimulationEngine engine, int asteroids, long seed) {
+        ArrayList<Planet> planets = engine.getPlanets();
+        majorBodies = planets.size() + 2;
+        count = majorBodies + asteroids;
+        x = new double[count];
+        y = new double[count];
+        vx = new double[count];
+        vy = new double[count];
+        ax = new double[count];
+        ay = new double[count];
+        mu = new double[count];
+
+        Star sun = engine.getSun();
+        mu[0] = sun.mu;
+        for (int i = 0; i < planets.size(); i++) {
+            Planet planet = planets.get(i);
+            set(i + 1, planet.getPosition(), planet.getVelocity(), planet.mu);
+            addStateOf(i + 1, planet.parent, planets); // moons come after their parent, which is already heliocentric
+        }
+
+        // the spacecraft is massless, its state is relative to the body it orbits
+        Spacecraft spacecraft = engine.getSpacecraft();
+        int s = majorBodies - 1;
+        set(s, spacecraft.position, spacecraft.velocity, 0);
+        addStateOf(s, spacecraft.orbit.celestialBody, planets);
+
+        // asteroids on nearly circular orbits between the planets
+        Random random = new Random(seed);
+        for (int i = majorBodies; i < count; i++) {
+            double distance = 3.4 + random.nextDouble();
+            double angle = 2 * Math.PI * random.nextDouble();
+            double speed = Math.sqrt(sun.mu / distance) * (1 + 0.02 * random.nextGaussian());
+            x[i] = distance * Math.cos(angle);
+            y[i] = distance * Math.sin(angle);
+            vx[i] = -speed * Math.sin(angle);
+            vy[i] = speed * Math.cos(angle);
+            mu[i] = ASTEROID_MU;
+        }
+
+        updateAccelerations();
+    }
+
+    public static void main(String[] args) {
+        int asteroids = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        NBody nBody = new NBody(new SimulationEngine(seed), asteroids, seed);
+        long beginTime = System.currentTimeMillis();
+        for (int i = 0; i < steps; i++) {
+            nBody.step(0.01);
+        }
+        long endTime = System.currentTimeMillis();
+        System.out.println(nBody.count + " bodies, " + steps + " steps in " + (endTime - beginTime) + " ms = "
+                + (endTime - beginTime) / steps + " ms per step");
+    }
+
+    private void set(int i, Vector position, Vector velocity, double mu) {
+        x[i] = position.getX();
+        y[i] = position.getY();
+        vx[i] = velocity.getX();
+        vy[i] = velocity.getY();
+        this.mu[i] = mu;
+    }
+
+    // adds the heliocentric state of a body, which is already set, to a state relative to that body
+    private void addStateOf(int i, CelestialBody body, ArrayList<Planet> planets) {
+        int j = planets.indexOf(body) + 1; // 0 for the sun
+        x[i] += x[j];
+        y[i] += y[j];
+        vx[i] += vx[j];
+        vy[i] += vy[j];
+    }
+
+    // kick, drift, kick
+    public void step(double timeStep) {
+        for (int i = 0; i < count; i++) {
+            vx[i] += 0.5 * timeStep * ax[i];
+            vy[i] += 0.5 * timeStep * ay[i];
+            x[i] += timeStep * vx[i];
+            y[i] += timeStep * vy[i];
+        }
+        updateAccelerations();
+        for (int i = 0; i < count; i++) {
+            vx[i] += 0.5 * timeStep * ax[i];
+            vy[i] += 0.5 * timeStep * ay[i];
+        }
+    }
+
+    // the tree is built in parallel, the walks through it are split over the common fork-join pool in the order of
+    // the tree, so bodies walked one after another visit mostly the same nodes
+    private void updateAccelerations() {
+        tree.build(x, y, mu, count);
+        IntStream.range(0, (count + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+            int[] stack = QuadTree.createStack();
+            double[] acceleration = new double[2];
+            int[] order = tree.getOrder();
+            for (int k = chunk * CHUNK_SIZE; k < Math.min(count, (chunk + 1) * CHUNK_SIZE); k++) {
+                int i = order[k];
+                tree.accelerate(i, THETA, SOFTENING, stack, acceleration);
+                ax[i] = acceleration[0];
+                ay[i] = acceleration[1];
+            }
+        });
+    }
+
+    // positions relative to the sun, which moves a little in this model
+    public void getPositions(float[] xs, float[] ys) {
+        for (int i = 0; i < count; i++) {
+            xs[i] = (float) (x[i] - x[0]);
+            ys[i] = (float) (y[i] - y[0]);
+        }
+    }
+}
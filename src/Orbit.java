@@ -1,21 +1,59 @@
 import java.awt.*;
-import java.util.ArrayList;
+import java.awt.geom.Path2D;
 
 public class Orbit {
-    public ArrayList<Vector> positionsWrtCb = new ArrayList<>();
-    private final ArrayList<Integer> x_ints = new ArrayList<>();
-    private final ArrayList<Integer> y_ints = new ArrayList<>();
+    public final Trajectory trajectory = new Trajectory(); // nodes used for drawing only
+    private static final HudText bodyText = new HudText();
+    private static final HudText eccentricityText = new HudText();
+    private static final HudText semiMajorAxisText = new HudText("Semi major axis = %.3f km", 3);
+    private static final HudText periapsisText = new HudText("Pe: %.3f", 3);
+    private static final HudText apoapsisText = new HudText("Ap: %.3f", 3);
     private final Vector periapsis = new Vector(0, 0);
     private final Vector apoapsis = new Vector(0, 0);
-    public final double dT = 0.001;
-    public int numberOfNodes;
+    private static final int INITIAL_DRAW_SEGMENTS = 16;
+    private static final int MAX_SUBDIVISIONS = 12; // only segments in view are subdivided
+    private static final double PIXEL_TOLERANCE = 0.5; // maximum distance between the orbit and the drawn segments
+    private boolean drawNodesOutdated = true;
+    private int drawNodesScaleFactor;
+    private final Path2D.Float path = new Path2D.Float(); // the trajectory in view, in pixels relative to the celestial body
+    private final Rectangle pathRegion = new Rectangle(); // the part of the screen the path was made for, relative to the celestial body
+    private final Rectangle region = new Rectangle();
     public CelestialBody celestialBody;
+    private final CelestialBody homeBody; // the body orbited after a reset
     public boolean isOnEscapePath, isOnCrashPath;
+    public double period, endTime; // endTime is the time after the start at which the orbit leaves the SOI or hits the surface
     private double semiMajorAxis, eccentricity;
-    private int skipDrawNode;
+    private double semiLatusRectum, argumentOfPeriapsis, meanMotion, velocityFactor;
+    private double direction; // 1 for counter clockwise, -1 for clockwise
+    private double trueAnomalyStart, endAnomaly, timeSincePeriapsisStart;
+    private int revision; // incremented every time the orbit is recalculated
 
     public Orbit(CelestialBody celestialBody){
         this.celestialBody = celestialBody;
+        this.homeBody = celestialBody;
+    }
+
+    // copy of the orbital elements, the drawing nodes are sampled again by the copy
+    public Orbit(Orbit orbit){
+        celestialBody = orbit.celestialBody;
+        homeBody = orbit.homeBody;
+        isOnEscapePath = orbit.isOnEscapePath;
+        isOnCrashPath = orbit.isOnCrashPath;
+        period = orbit.period;
+        endTime = orbit.endTime;
+        semiMajorAxis = orbit.semiMajorAxis;
+        eccentricity = orbit.eccentricity;
+        semiLatusRectum = orbit.semiLatusRectum;
+        argumentOfPeriapsis = orbit.argumentOfPeriapsis;
+        meanMotion = orbit.meanMotion;
+        velocityFactor = orbit.velocityFactor;
+        direction = orbit.direction;
+        trueAnomalyStart = orbit.trueAnomalyStart;
+        endAnomaly = orbit.endAnomaly;
+        timeSincePeriapsisStart = orbit.timeSincePeriapsisStart;
+        revision = orbit.revision;
+        periapsis.set(orbit.periapsis);
+        apoapsis.set(orbit.apoapsis);
     }
 
     public void recalculate(Vector startPosition, Vector startVelocity) {
@@ -23,91 +61,236 @@ public class Orbit {
         double v_start_abs = startVelocity.getAbs();
         double v_start_abs2 = v_start_abs * v_start_abs;
 
-        double difference = startPosition.getAngle() - startVelocity.getAngle();
-        boolean descending = (difference > 0.5 * Math.PI && difference < 1.5 * Math.PI) || (difference < -0.5*Math.PI && difference > -1.5 * Math.PI);
-        // System.out.println("orbiter descending: " + descending);
-
         // calculate specific angular momentum
         double angularMomentum = startPosition.crossMultiplication(startVelocity);
-        // System.out.println("angularMomentum: " + angularMomentum);
-
-        boolean isCCW = angularMomentum > 0;
-        // System.out.println("orbit is counter clockwise: " + isCCW);
+        direction = angularMomentum < 0 ? -1 : 1;
 
         // vis viva equation
         semiMajorAxis = distance_start / (2 - (distance_start * v_start_abs2 / celestialBody.mu));
 
         // calculate the eccentricity vector
-        Vector eVector = new Vector((v_start_abs2 - celestialBody.mu / distance_start) * startPosition.getX() - (startPosition.dotMultiplication(startVelocity)) * startVelocity.getX(),
-                (v_start_abs2 - celestialBody.mu / distance_start) * startPosition.getY() - (startPosition.dotMultiplication(startVelocity)) * startVelocity.getY());
-        eccentricity = eVector.getAbs() / celestialBody.mu;
-        // System.out.println("eccentricity: " + eccentricity);
+        double radialFactor = v_start_abs2 - celestialBody.mu / distance_start;
+        double velocityProduct = startPosition.dotMultiplication(startVelocity);
+        double eX = radialFactor * startPosition.getX() - velocityProduct * startVelocity.getX();
+        double eY = radialFactor * startPosition.getY() - velocityProduct * startVelocity.getY();
+        eccentricity = Math.sqrt(eX * eX + eY * eY) / celestialBody.mu;
+        argumentOfPeriapsis = Math.atan2(eY, eX);
+
+        semiLatusRectum = angularMomentum * angularMomentum / celestialBody.mu; // semi-latus rectum
+        velocityFactor = celestialBody.mu / Math.abs(angularMomentum); // = sqrt(mu / p)
+        meanMotion = Math.sqrt(celestialBody.mu / Math.abs(semiMajorAxis * semiMajorAxis * semiMajorAxis));
+        period = eccentricity < 1 ? 2 * Math.PI / meanMotion : Double.POSITIVE_INFINITY;
+
+        double distance_periapsis = semiLatusRectum / (1 + eccentricity); // periapsis distance
+        periapsis.setVectorFromRadiusAndAngle(distance_periapsis, argumentOfPeriapsis);
+        apoapsis.setVectorFromRadiusAndAngle(semiMajorAxis * (1 + eccentricity), argumentOfPeriapsis + Math.PI);
+
+        // true anomaly is measured in the direction of motion, so it increases in time for both CW and CCW orbits
+        trueAnomalyStart = normalizeAngle(direction * (startPosition.getAngle() - argumentOfPeriapsis));
+        timeSincePeriapsisStart = Kepler.timeSincePeriapsis(trueAnomalyStart, eccentricity, meanMotion);
+
+        // find where the trajectory ends: on the surface (before or after the next apoapsis) or at the edge of the SOI
+        boolean crashPossible = distance_periapsis < celestialBody.radius;
+        boolean escapePossible = eccentricity >= 1 || apoapsis.getAbs() > celestialBody.SOI;
+        double crashAnomaly = crashPossible ? trueAnomalyAtDistance(celestialBody.radius) : 0;
+        double escapeAnomaly = escapePossible ? trueAnomalyAtDistance(celestialBody.SOI) : 0;
+
+        isOnCrashPath = false;
+        isOnEscapePath = false;
+        if (crashPossible && trueAnomalyStart < 0) {
+            isOnCrashPath = true;
+            endAnomaly = -crashAnomaly;
+            endTime = Kepler.timeSincePeriapsis(endAnomaly, eccentricity, meanMotion) - timeSincePeriapsisStart;
+        } else if (escapePossible) {
+            isOnEscapePath = true;
+            endAnomaly = escapeAnomaly;
+            endTime = Kepler.timeSincePeriapsis(endAnomaly, eccentricity, meanMotion) - timeSincePeriapsisStart;
+        } else if (crashPossible) {
+            isOnCrashPath = true;
+            endAnomaly = 2 * Math.PI - crashAnomaly;
+            endTime = Kepler.timeSincePeriapsis(-crashAnomaly, eccentricity, meanMotion) + period - timeSincePeriapsisStart;
+        } else {
+            endAnomaly = trueAnomalyStart + 2 * Math.PI;
+            endTime = Double.POSITIVE_INFINITY;
+        }
+        endTime = Math.max(0, endTime);
+
+        drawNodesOutdated = true;
+        revision++;
+    }
 
-        double argumentOfPeriapsis = eVector.getAngle();
-        // System.out.println("eVector.getAngle(): " + Math.toDegrees(argumentOfPeriapsis));
+    // position and velocity relative to the celestial body at a time after the start of the orbit
+    public void updateState(double time, Vector position, Vector velocity) {
+        double trueAnomaly = Kepler.trueAnomaly(meanMotion * (timeSincePeriapsisStart + time), eccentricity);
+        double distance = semiLatusRectum / (1 + eccentricity * Math.cos(trueAnomaly));
+        double angle = argumentOfPeriapsis + direction * trueAnomaly;
+        position.setVectorFromRadiusAndAngle(distance, angle);
+
+        double radialVelocity = velocityFactor * eccentricity * Math.sin(trueAnomaly);
+        double transverseVelocity = direction * velocityFactor * (1 + eccentricity * Math.cos(trueAnomaly));
+        velocity.setX(radialVelocity * Math.cos(angle) - transverseVelocity * Math.sin(angle));
+        velocity.setY(radialVelocity * Math.sin(angle) + transverseVelocity * Math.cos(angle));
+    }
 
-        double semiLatusRectum = angularMomentum * angularMomentum / celestialBody.mu; // semi-latus rectum
-        // System.out.println("semiLatusRectum: " + semiLatusRectum);
+    public int getRevision() {
+        return revision;
+    }
 
-        double distance_periapsis = semiMajorAxis * (1 - eccentricity); // periapsis distance
-        // System.out.println("distance_periapsis: " + distance_periapsis);
+    // this ellipse as a StaticOrbit whose time is the orbit time, with x towards the periapsis and y along the motion
+    // at the periapsis, so it is fitted once and then evaluated fast, see toBodyFrame
+    public StaticOrbit getPerifocalOrbit() {
+        StaticOrbit perifocalOrbit = new StaticOrbit(semiMajorAxis, eccentricity, celestialBody.mu);
+        perifocalOrbit.reset(trueAnomalyStart);
+        return perifocalOrbit;
+    }
 
-        double argument = (semiLatusRectum / distance_start - 1) / eccentricity;
-        double trueAnomalyStart = argument < -1 ? Math.PI : argument > 1 ? 0 : Math.acos(argument);
+    // a state of the perifocal orbit relative to the celestial body, as updateState gives it
+    public void toBodyFrame(Vector position, Vector velocity) {
+        double cos = Math.cos(argumentOfPeriapsis), sin = Math.sin(argumentOfPeriapsis);
+        position.set(cos * position.getX() - direction * sin * position.getY(), sin * position.getX() + direction * cos * position.getY());
+        velocity.set(cos * velocity.getX() - direction * sin * velocity.getY(), sin * velocity.getX() + direction * cos * velocity.getY());
+    }
 
-        if (descending == isCCW) {
-            trueAnomalyStart = 2 * Math.PI - trueAnomalyStart;
+    // time from a time after the start of the orbit until the next periapsis or apoapsis passage
+    public double getTimeToNextApsis(double time) {
+        double timeSincePeriapsis = timeSincePeriapsisStart + time;
+        if (eccentricity >= 1) {
+            return timeSincePeriapsis < 0 ? -timeSincePeriapsis : Double.POSITIVE_INFINITY;
         }
-        trueAnomalyStart = trueAnomalyStart > Math.PI ? trueAnomalyStart - 2 * Math.PI : trueAnomalyStart < -Math.PI ? trueAnomalyStart + 2 * Math.PI : trueAnomalyStart;
-        // System.out.println("trueAnomalyStart: " + Math.toDegrees(trueAnomalyStart));
+        double halfPeriod = 0.5 * period;
+        double timeSinceApsis = timeSincePeriapsis - halfPeriod * Math.floor(timeSincePeriapsis / halfPeriod);
+        return halfPeriod - timeSinceApsis;
+    }
 
-        periapsis.setVectorFromRadiusAndAngle(distance_periapsis, argumentOfPeriapsis);
+    public double getEccentricity() {
+        return eccentricity;
+    }
 
-        // double Vp = Math.sqrt(celestialBody.mu * 2 * distance_apoapsis / (distance_periapsis * (distance_apoapsis + distance_periapsis))); // periapsis velocity
-        // System.out.println("Vp: " + Vp);
+    // distances to the celestial body between which the orbit stays until it ends
+    public double getMinDistance() {
+        return semiLatusRectum / (1 + eccentricity);
+    }
 
-        // double Va = Math.sqrt(celestialBody.mu * 2 * distance_periapsis / (distance_apoapsis * (distance_apoapsis + distance_periapsis))); // apoapsis velocity
-        // System.out.println("Va: " + Va);
+    public double getMaxDistance() {
+        return isOnEscapePath || eccentricity >= 1 ? celestialBody.SOI : semiLatusRectum / (1 - eccentricity);
+    }
 
-        // make the orbital trajectory around the celestial body
-        double trueAnomaly = trueAnomalyStart;
-        double angularVelocity = 0;
-        double distance = distance_start;
-        positionsWrtCb.clear();
-        apoapsis.setVectorFromRadiusAndAngle(semiMajorAxis * (1 + eccentricity), argumentOfPeriapsis + Math.PI);
+    // speed at periapsis
+    public double getMaxSpeed() {
+        return velocityFactor * (1 + eccentricity);
+    }
 
-        while (((isCCW && trueAnomaly < trueAnomalyStart + 2 * Math.PI + dT * angularVelocity) ||
-                (!isCCW && trueAnomaly > trueAnomalyStart - 2 * Math.PI - dT * angularVelocity) ||
-                semiMajorAxis < 0) &&
-                distance < celestialBody.SOI &&
-                distance > celestialBody.radius) {
-            distance = semiLatusRectum / (1 + eccentricity * Math.cos(trueAnomaly));
-            angularVelocity = angularMomentum / (distance * distance);
-            trueAnomaly += angularVelocity * dT;
-            positionsWrtCb.add(new Vector(distance, argumentOfPeriapsis + trueAnomaly, true));
-        }
+    private double trueAnomalyAtDistance(double distance) {
+        double argument = (semiLatusRectum / distance - 1) / eccentricity;
+        return argument < -1 ? Math.PI : argument > 1 ? 0 : Math.acos(argument);
+    }
 
-        isOnCrashPath = distance < celestialBody.radius;
-        isOnEscapePath = distance > celestialBody.SOI;
+    private static double normalizeAngle(double angle) {
+        return angle > Math.PI ? angle - 2 * Math.PI : angle < -Math.PI ? angle + 2 * Math.PI : angle;
+    }
 
-        numberOfNodes = positionsWrtCb.size();
-        // System.out.println("numberOfNodes: " + numberOfNodes);
-        if (numberOfNodes > 200) {
-            skipDrawNode = numberOfNodes / 200;
-        } else {
-            skipDrawNode = 1;
+    // sample the orbit in screen space: segments in view are split where the curvature at the current zoom needs it
+    private void updateDrawNodes() {
+        trajectory.clear();
+        drawNodesScaleFactor = OrbitCalculator.scaleFactor;
+        drawNodesOutdated = false;
+        pathRegion.setBounds(region);
+
+        double step = (endAnomaly - trueAnomalyStart) / INITIAL_DRAW_SEGMENTS;
+        double distance = distanceAtTrueAnomaly(trueAnomalyStart);
+        trajectory.addFromRadiusAndAngle(distance, argumentOfPeriapsis + direction * trueAnomalyStart);
+        for (int i = 0; i < INITIAL_DRAW_SEGMENTS; i++) {
+            subdivide(trueAnomalyStart + i * step, trueAnomalyStart + (i + 1) * step, MAX_SUBDIVISIONS);
         }
     }
 
-    public void draw(Graphics g2d) {
-        for (int i = 0; i < numberOfNodes - skipDrawNode; i += skipDrawNode) {
-            g2d.drawLine(x_ints.get(i) + Orbiter.xdrag, y_ints.get(i) + Orbiter.ydrag, x_ints.get(i + skipDrawNode) + Orbiter.xdrag, y_ints.get(i + skipDrawNode) + Orbiter.ydrag);
+    // adds the nodes after the start of the segment, the start node has already been added
+    private void subdivide(double anomalyStart, double anomalyEnd, int subdivisionsLeft) {
+        double anomalyMiddle = 0.5 * (anomalyStart + anomalyEnd);
+        double distanceEnd = distanceAtTrueAnomaly(anomalyEnd);
+        double angleEnd = argumentOfPeriapsis + direction * anomalyEnd;
+        double xEnd = distanceEnd * Math.cos(angleEnd);
+        double yEnd = distanceEnd * Math.sin(angleEnd);
+
+        if (subdivisionsLeft > 0) {
+            int last = trajectory.size() - 1;
+            double xStart = trajectory.getX(last);
+            double yStart = trajectory.getY(last);
+            double distanceMiddle = distanceAtTrueAnomaly(anomalyMiddle);
+            double angleMiddle = argumentOfPeriapsis + direction * anomalyMiddle;
+            double xMiddle = distanceMiddle * Math.cos(angleMiddle) - xStart;
+            double yMiddle = distanceMiddle * Math.sin(angleMiddle) - yStart;
+            double xChord = xEnd - xStart;
+            double yChord = yEnd - yStart;
+            double chordLength = Math.sqrt(xChord * xChord + yChord * yChord);
+
+            // distance of the middle of the arc to the chord
+            double error = chordLength > 0 ? Math.abs(xChord * yMiddle - yChord * xMiddle) / chordLength : Math.sqrt(xMiddle * xMiddle + yMiddle * yMiddle);
+            if (error * OrbitCalculator.scaleFactor > PIXEL_TOLERANCE && isInView(xStart, yStart, xStart + xMiddle, yStart + yMiddle, xEnd, yEnd, chordLength + error)) {
+                subdivide(anomalyStart, anomalyMiddle, subdivisionsLeft - 1);
+                subdivide(anomalyMiddle, anomalyEnd, subdivisionsLeft - 1);
+                return;
+            }
         }
+        trajectory.add(xEnd, yEnd);
+    }
 
-        int last_i = numberOfNodes - skipDrawNode - skipDrawNode;
-        if (!isOnEscapePath && !isOnCrashPath) {
-            g2d.drawLine(x_ints.get(last_i) + Orbiter.xdrag, y_ints.get(last_i) + Orbiter.ydrag, x_ints.get(0) + Orbiter.xdrag, y_ints.get(0) + Orbiter.ydrag);
+    // whether an arc through three points, which stays within the given distance of them, may be in view
+    private boolean isInView(double x1, double y1, double x2, double y2, double x3, double y3, double distance) {
+        double scaleFactor = OrbitCalculator.scaleFactor;
+        double margin = scaleFactor * distance;
+        double left = scaleFactor * Math.min(x1, Math.min(x2, x3)) - margin;
+        double right = scaleFactor * Math.max(x1, Math.max(x2, x3)) + margin;
+        double top = -scaleFactor * Math.max(y1, Math.max(y2, y3)) - margin;
+        double bottom = -scaleFactor * Math.min(y1, Math.min(y2, y3)) + margin;
+        return right >= region.x && left <= region.x + region.width && bottom >= region.y && top <= region.y + region.height;
+    }
+
+    private double distanceAtTrueAnomaly(double trueAnomaly) {
+        return semiLatusRectum / (1 + eccentricity * Math.cos(trueAnomaly));
+    }
+
+    // the part of the orbit inside the visible rectangle of the screen
+    public void draw(Graphics2D g2d, Rectangle visible) {
+        int originX = celestialBody.x_int + Orbiter.xdrag;
+        int originY = celestialBody.y_int + Orbiter.ydrag;
+        g2d.translate(originX, originY);
+        g2d.draw(updatePath(visible));
+        g2d.translate(-originX, -originY);
+    }
+
+    // The path is only made again when the orbit or the zoom changed or the visible rectangle left the part of the
+    // screen it was made for. Segments out of view are neither subdivided nor added to the path.
+    public Path2D updatePath(Rectangle visible) {
+        region.setBounds(visible.x - celestialBody.x_int - Orbiter.xdrag, visible.y - celestialBody.y_int - Orbiter.ydrag, visible.width, visible.height);
+        if (drawNodesOutdated || drawNodesScaleFactor != OrbitCalculator.scaleFactor || !pathRegion.contains(region)) {
+            updateDrawNodes();
+            trajectory.updatePath(path, OrbitCalculator.scaleFactor, region);
         }
+        return path;
+    }
+
+    // what draw, drawPeriapsis, drawApoapsis and drawSOI drew last, in pixels relative to the celestial body
+    public Rectangle getDrawnBounds() {
+        Rectangle bounds = path.getBounds();
+        bounds.grow(1, 1);
+        if (!isOnCrashPath) {
+            addApsisBounds(bounds, periapsis);
+        }
+        if (!isOnEscapePath) {
+            addApsisBounds(bounds, apoapsis);
+        } else {
+            int radius = (int) (celestialBody.SOI * OrbitCalculator.scaleFactor);
+            bounds.add(new Rectangle(-radius - 1, -radius - 1, 2 * radius + 3, 2 * radius + 3));
+        }
+        return bounds;
+    }
+
+    // the dot and its label, which is on either side of it
+    private static void addApsisBounds(Rectangle bounds, Vector apsis) {
+        int x = (int) (OrbitCalculator.scaleFactor * apsis.getX());
+        int y = -(int) (OrbitCalculator.scaleFactor * apsis.getY());
+        bounds.add(new Rectangle(x - 60, y - 25, 190, 45));
     }
 
     public void drawPeriapsis(Graphics2D g2d) {
@@ -119,7 +302,7 @@ public class Orbit {
             int x_offset = periapsis.getX() < apoapsis.getX() ? -55 : 5;
             int y_offset = periapsis.getY() < apoapsis.getY() ? 10 : -10;
 
-            g2d.drawString(String.format("Pe: %.3f", periapsis.abs - celestialBody.radius), x + x_offset, y + y_offset);
+            periapsisText.draw(g2d, periapsis.getAbs() - celestialBody.radius, x + x_offset, y + y_offset);
         }
     }
 
@@ -132,7 +315,7 @@ public class Orbit {
             int x_offset = apoapsis.getX() < periapsis.getX() ? -55 : 5;
             int y_offset = apoapsis.getY() < periapsis.getY() ? 10 : -10;
 
-            g2d.drawString(String.format("Ap: %.3f", apoapsis.abs - celestialBody.radius), x + x_offset, y + y_offset);
+            apoapsisText.draw(g2d, apoapsis.getAbs() - celestialBody.radius, x + x_offset, y + y_offset);
         }
     }
 
@@ -144,23 +327,20 @@ public class Orbit {
     }
 
     public void reset(){
-        System.out.println("Orbit reset");
         isOnEscapePath = false;
-        celestialBody = OrbitCalculator.getPlanets().get(0);
-    }
-
-    public void updatePixelsPositions() {
-        x_ints.clear();
-        y_ints.clear();
-        for (int i = 0; i < numberOfNodes; i++) {
-            x_ints.add(celestialBody.x_int + (int) (OrbitCalculator.scaleFactor * positionsWrtCb.get(i).getX()));
-            y_ints.add(celestialBody.y_int - (int) (OrbitCalculator.scaleFactor * positionsWrtCb.get(i).getY()));
-        }
+        celestialBody = homeBody;
     }
 
     public void drawUI(Graphics2D g2d, int y) {
-        g2d.drawString("Orbit is around " + celestialBody.name + (isOnEscapePath ? " (escape path)" : isOnCrashPath ? " (crash path)" : ""), 8, y - 110);
-        g2d.drawString(String.format("Eccentricity = %.3f", eccentricity) + (eccentricity < 1 ? " (ellipse)" : " (hyperbola)"), 8, y - 95);
-        g2d.drawString(String.format("Semi major axis = %.3f km", semiMajorAxis), 8, y - 80);
+        if (bodyText.isOutdated(celestialBody, (isOnEscapePath ? 1 : 0) + (isOnCrashPath ? 2 : 0))) {
+            bodyText.setText("Orbit is around " + celestialBody.name + (isOnEscapePath ? " (escape path)" : isOnCrashPath ? " (crash path)" : ""));
+        }
+        bodyText.draw(g2d, 8, y - 110);
+        long eccentricityKey = Math.round(1000 * eccentricity);
+        if (eccentricityText.isOutdated(null, 2 * eccentricityKey + (eccentricity < 1 ? 0 : 1))) {
+            eccentricityText.setText(String.format("Eccentricity = %.3f", eccentricityKey / 1000.0) + (eccentricity < 1 ? " (ellipse)" : " (hyperbola)"));
+        }
+        eccentricityText.draw(g2d, 8, y - 95);
+        semiMajorAxisText.draw(g2d, semiMajorAxis, 8, y - 80);
     }
 }
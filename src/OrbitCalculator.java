@@ -1,28 +1,44 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 
 public class OrbitCalculator extends JFrame implements KeyListener {
     private static int xBound;
     private static int yBound;
     public static int scaleFactor = 1000;
-    private final static Star sun = new Star(0.1, 10, 0.1, Color.YELLOW);
-    private final static Planet earth = new Planet(0.04,0.75, 0.005, Color.CYAN, 2.8, 0.2, "earth");
-    private final static Planet mars = new Planet(0.02,0.45, 0.003, Color.RED, 4.9, 0.15, "mars");
-    private final Spacecraft spacecraft = new Spacecraft(earth);
-    private final Space space = new Space();
+    private final SimulationEngine engine = new SimulationEngine();
+    private final Star sun = engine.getSun();
+    private final Spacecraft spacecraft = engine.getSpacecraft(); // only changed through commands to the physics thread
+    private final PhysicsThread physics = new PhysicsThread(engine, OrbitCalculator.timeStep);
+    private Snapshot current = physics.getSnapshots()[1]; // the state that is drawn
+    private Snapshot[] readSnapshots = physics.getSnapshots(); // the pair the last frame was interpolated from
+    private int[] fleetPixelX = new int[0], fleetPixelY = new int[0]; // of the craft of the current snapshot, kept here as snapshots are shared
+    private final Space space = new Space(engine);
     private Timer timer;
     public final static double timeStep = 0.05;
-    private static final ArrayList<Planet> planets = new ArrayList<>();
+    private final static int frameDelay = 16; // ms between frames, independent of the physics time step
+    private final static int asteroids = 20000; // test particles in N-body mode, a step takes about 40 ms on one core
+    private final static int constellation = 1000; // craft added to the fleet at a time
     private Point mousePoint;
-    private int cameraIndex = 3;
+    private int cameraIndex = engine.getPlanets().size() + 1; // the sun, the planets, the spacecraft and then the fleet
     private boolean dragged = false;
     private boolean zoomedOut, zoomedIn;
     private Orbiter orbiter;
-    private long timeCameraPositionChanged;
-    private boolean showUI;
-    private Date date;
+    private Path recording; // the file of the last recording
+    private TelemetryReplay replay; // drawn instead of the simulation while it is open
+    private double replayTime;
+    private int replayWarpIndex;
+    private long replayIndex;
+    private Snapshot replaySnapshot;
+    private long replayFrameNanos;
+    private boolean pausedBeforeReplay;
+    private long frameAllocated = -1; // bytes the EDT had allocated at the last frame
+    private int draggedHandle = -1; // handle of the maneuver node that is dragged, -1 when the view is dragged
+    private Point handleDragStart;
+    private double handleDirectionX, handleDirectionY, dragStartPrograde, dragStartRadial;
 
     public OrbitCalculator(String title) {
         this.setTitle(title);
@@ -34,6 +50,7 @@ public class OrbitCalculator extends JFrame implements KeyListener {
                 yBound = (int) getSize().getHeight();
                 System.out.println("resized to: " + xBound + " by " + yBound);
                 sun.updateMiddle(xBound / 2, yBound / 2);
+                space.setFrameSize(xBound, yBound);
             }
         });
 
@@ -50,14 +67,24 @@ public class OrbitCalculator extends JFrame implements KeyListener {
             @Override
             public void mousePressed(MouseEvent e) {
                 mousePoint = e.getPoint();
+                grabHandle(SwingUtilities.convertPoint(OrbitCalculator.this, mousePoint, space));
                 repaint();
             }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                draggedHandle = -1;
+            }
         });
         addMouseMotionListener(new MouseMotionListener() {
             @Override
             public void mouseDragged(MouseEvent e) {
+                if (draggedHandle >= 0) {
+                    dragHandle(SwingUtilities.convertPoint(OrbitCalculator.this, e.getPoint(), space));
+                    return;
+                }
                 dragged = true;
-                timeCameraPositionChanged = System.currentTimeMillis();
+                space.showCameraPosition("free");
                 Orbiter.xdrag += e.getX() - mousePoint.x;
                 Orbiter.ydrag += e.getY() - mousePoint.y;
                 mousePoint = e.getPoint();
@@ -82,19 +109,16 @@ public class OrbitCalculator extends JFrame implements KeyListener {
         setContentPane(space);
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         setKeyBoardListeners();
-        showUI = true;
+        engine.addListener(SimulationListener.CONSOLE);
 
-        planets.add(earth);
-        planets.add(mars);
+        space.setSnapshot(current, fleetPixelX, fleetPixelY);
         setCameraPosition();
-        timeCameraPositionChanged = System.currentTimeMillis();
-
-        spacecraft.initStartVectors(); // spacecraft starts in circular orbit around earth
-        date = new Date();
+        space.showCameraPosition(getCameraName());
 
         // start the simulation
-        timer = new Timer((int) (1000 * timeStep), update);
-        timer.start(); // timeStep = 50 ms -> f_s = 20 Hz
+        physics.start(); // timeStep = 50 ms -> f_s = 20 Hz
+        timer = new Timer(frameDelay, render);
+        timer.start();
     }
 
     private void setKeyBoardListeners() {
@@ -103,18 +127,9 @@ public class OrbitCalculator extends JFrame implements KeyListener {
         addKeyListener(this);
     }
 
-    public static Star getSun(){
-        return sun;
-    }
-
-    public static ArrayList<Planet> getPlanets(){
-        return planets;
-    }
-
-    private final ActionListener update = e -> {
-//        long beginTime = System.currentTimeMillis();
-
-        date.update();
+    private final ActionListener render = e -> {
+        Profiler.recordAllocation(Profiler.Phase.FRAME_ALLOCATION, frameAllocated); // everything since the last frame, painting included
+        frameAllocated = Profiler.allocatedBytes();
         if (zoomedOut) {
             scaleFactor = Math.max(50, (int) (scaleFactor * 0.9));
             updateRadii();
@@ -125,46 +140,191 @@ public class OrbitCalculator extends JFrame implements KeyListener {
             zoomedIn = false;
         }
 
-        for (Planet planet : getPlanets()){
-            planet.update(0.0001);
+        if (replay != null) {
+            current = stepReplay();
+            updatePixelPositions(current, current, 1);
+        } else {
+            Snapshot[] snapshots = physics.getSnapshots();
+            current = snapshots[1];
+            updatePixelPositions(snapshots[0], current, physics.getInterpolationFactor(current));
+            recycleSnapshots(snapshots);
+        }
+        // the camera follows before the changes are found, so they are what is painted
+        if (!dragged){
+            setCameraPosition();
         }
-        spacecraft.update();
+        space.setSnapshot(current, fleetPixelX, fleetPixelY);
+        space.repaintChanged();
+    };
 
-        // Update all pixel locations
-        for (Planet planet : getPlanets()) {
-            planet.updatePixelPosition();
+    // a handle of the maneuver node under the mouse is dragged instead of the view
+    private void grabHandle(Point point) {
+        ManeuverNode node = current.maneuverNode;
+        draggedHandle = -1;
+        if (node == null || replay != null) {
+            return;
+        }
+        for (int handle : new int[]{ManeuverNode.PROGRADE_HANDLE, ManeuverNode.RADIAL_HANDLE}) {
+            if (Math.abs(point.x - node.getHandleX(handle)) <= 6 && Math.abs(point.y - node.getHandleY(handle)) <= 6) {
+                draggedHandle = handle;
+                handleDragStart = point;
+                handleDirectionX = node.getHandleDirectionX(handle);
+                handleDirectionY = node.getHandleDirectionY(handle);
+                dragStartPrograde = node.getPrograde();
+                dragStartRadial = node.getRadial();
+            }
         }
-        spacecraft.updatePixelPosition();
-        space.repaint();
+    }
 
-        if (!dragged){
-            setCameraPosition();
+    // the delta v follows the distance the mouse moved along the handle, the preview is recalculated on the physics thread
+    private void dragHandle(Point point) {
+        double deltaV = ((point.x - handleDragStart.x) * handleDirectionX + (point.y - handleDragStart.y) * handleDirectionY) / ManeuverNode.PIXELS_PER_DELTA_V;
+        double prograde = draggedHandle == ManeuverNode.PROGRADE_HANDLE ? dragStartPrograde + deltaV : dragStartPrograde;
+        double radial = draggedHandle == ManeuverNode.RADIAL_HANDLE ? dragStartRadial + deltaV : dragStartRadial;
+        physics.submit(() -> engine.setManeuverDeltaV(prograde, radial));
+    }
+
+    // advances the replay clock by the real time of the frame at the replay warp speed, like the simulation would
+    private Snapshot stepReplay() {
+        long now = System.nanoTime();
+        double speed = SimulationEngine.timeStep / OrbitCalculator.timeStep * Orbiter.WARP_SPEEDS[replayWarpIndex];
+        double endTime = replay.getTime(replay.getRecordCount() - 1);
+        replayTime = Math.min(endTime, replayTime + (now - replayFrameNanos) * 1e-9 * speed);
+        replayFrameNanos = now;
+
+        long index = replay.indexAt(replayTime);
+        if (index != replayIndex) {
+            replaySnapshot = new Snapshot(engine, replay, index);
+            replayIndex = index;
         }
+        space.setReplayMessage(String.format("Replay %.2f / %.2f at %dx", replayTime, endTime, Orbiter.WARP_SPEEDS[replayWarpIndex]));
+        return replaySnapshot;
+    }
 
-//        long endTime = System.currentTimeMillis();
-//        System.out.println("elapsed: " + (endTime - beginTime));
-    };
+    private void openReplay() {
+        if (replay != null) {
+            return;
+        }
+        try {
+            replay = new TelemetryReplay(recording, engine.getPlanets().size());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (replay.getRecordCount() == 0) {
+            closeReplay();
+            return;
+        }
+        pausedBeforeReplay = physics.isPaused();
+        physics.setPaused(true);
+        replayTime = replay.getTime(0);
+        replayWarpIndex = Math.min(Orbiter.WARP_SPEEDS.length - 1, replay.getWarpIndex(0)); // a replay has no events to jump to
+        replayIndex = -1;
+        replayFrameNanos = System.nanoTime();
+    }
+
+    private void closeReplay() {
+        try {
+            replay.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        replay = null;
+        replaySnapshot = null;
+        space.setReplayMessage(null);
+        physics.setPaused(pausedBeforeReplay);
+    }
+
+    private void replayKeyPressed(int code) {
+        double startTime = replay.getTime(0);
+        double duration = replay.getTime(replay.getRecordCount() - 1) - startTime;
+        switch (code) {
+            case KeyEvent.VK_COMMA -> replayWarpIndex = Math.max(0, replayWarpIndex - 1);
+            case KeyEvent.VK_PERIOD -> replayWarpIndex = Math.min(Orbiter.WARP_SPEEDS.length - 1, replayWarpIndex + 1);
+            case KeyEvent.VK_LEFT -> replayTime = Math.max(startTime, replayTime - duration / 20);
+            case KeyEvent.VK_RIGHT -> replayTime = Math.min(startTime + duration, replayTime + duration / 20);
+            case KeyEvent.VK_P -> closeReplay();
+        }
+    }
+
+    // Snapshots leave the published pair for good, so those of the pair read last time that are not in this one are
+    // never read again: the interpolation only reads the pair and painting only reads the current snapshot.
+    private void recycleSnapshots(Snapshot[] snapshots) {
+        for (int i = 0; i < readSnapshots.length; i++) {
+            Snapshot snapshot = readSnapshots[i];
+            if (snapshot != snapshots[0] && snapshot != snapshots[1] && (i == 0 || snapshot != readSnapshots[0])) {
+                physics.recycle(snapshot);
+            }
+        }
+        readSnapshots = snapshots;
+    }
+
+    // pixel locations in between the previous and the current snapshot
+    private void updatePixelPositions(Snapshot previous, Snapshot current, double alpha) {
+        long start = Profiler.start();
+        ArrayList<Planet> planets = engine.getPlanets();
+        for (int i = 0; i < planets.size(); i++) {
+            planets.get(i).updatePixelPosition(previous.planetX[i] + alpha * (current.planetX[i] - previous.planetX[i]),
+                    previous.planetY[i] + alpha * (current.planetY[i] - previous.planetY[i]));
+        }
+
+        Vector position = current.spacecraft.position;
+        Vector previousPosition = previous.spacecraft.orbit.celestialBody == current.spacecraft.orbit.celestialBody ? previous.spacecraft.position : position;
+        current.spacecraft.updatePixelPosition(previousPosition.getX() + alpha * (position.getX() - previousPosition.getX()),
+                previousPosition.getY() + alpha * (position.getY() - previousPosition.getY()));
+
+        // craft are only interpolated while none were removed and they orbit the same body as before
+        Fleet fleet = engine.getFleet();
+        boolean sameFleet = previous.fleetX.length == current.fleetX.length;
+        if (fleetPixelX.length < current.fleetX.length) {
+            fleetPixelX = new int[current.fleetX.length];
+            fleetPixelY = new int[current.fleetX.length];
+        }
+        for (int i = 0; i < current.fleetX.length; i++) {
+            CelestialBody body = fleet.getBody(current.fleetBody[i]);
+            double x = current.fleetX[i];
+            double y = current.fleetY[i];
+            if (sameFleet && previous.fleetBody[i] == current.fleetBody[i]) {
+                x = previous.fleetX[i] + alpha * (x - previous.fleetX[i]);
+                y = previous.fleetY[i] + alpha * (y - previous.fleetY[i]);
+            }
+            fleetPixelX[i] = body.x_int + (int) Math.round(scaleFactor * x);
+            fleetPixelY[i] = body.y_int - (int) Math.round(scaleFactor * y);
+        }
+        Profiler.record(Profiler.Phase.PIXEL_POSITIONS, start);
+    }
 
     public void updateRadii(){
         sun.updateRadius();
-        for (Planet planet : getPlanets()) {
+        for (Planet planet : engine.getPlanets()) {
             planet.updateRadius();
         }
     }
 
     public void setCameraPosition(){
-        switch (cameraIndex) {
-            case 0 ->
-                orbiter = sun;
-            case 1, 2 ->
-                orbiter = planets.get(cameraIndex - 1);
-            case 3 ->
-                orbiter = spacecraft;
+        int planets = engine.getPlanets().size();
+        int craft = cameraIndex - planets - 2; // index in the fleet
+        if (craft >= 0 && craft < current.fleetX.length) {
+            Orbiter.xdrag = xBound / 2 - fleetPixelX[craft];
+            Orbiter.ydrag = yBound / 2 - fleetPixelY[craft];
+            return;
+        }
+        if (cameraIndex == 0) {
+            orbiter = sun;
+        } else if (cameraIndex <= planets) {
+            orbiter = engine.getPlanets().get(cameraIndex - 1);
+        } else {
+            orbiter = current.spacecraft; // also when the followed craft of the fleet was removed
         }
         Orbiter.xdrag = xBound / 2 - orbiter.x_int;
         Orbiter.ydrag = yBound / 2 - orbiter.y_int;
     }
 
+    private String getCameraName() {
+        int craft = cameraIndex - engine.getPlanets().size() - 2;
+        return craft >= 0 && craft < current.fleetX.length ? "fleet craft " + (craft + 1) : orbiter.name;
+    }
+
     @Override
     public void keyTyped(KeyEvent e) {
     }
@@ -172,136 +332,129 @@ public class OrbitCalculator extends JFrame implements KeyListener {
     @Override
     public void keyPressed(KeyEvent e) {
         int code = e.getKeyCode();
-        if (Orbiter.warpIndex < 3){
-            if (code == KeyEvent.VK_UP) { // prograde engine burn
-                spacecraft.firePrograde();
-            }
-            if (code == KeyEvent.VK_DOWN) { // retrograde engine burn
-                spacecraft.fireRetrograde();
-            }
-            if (code == KeyEvent.VK_RIGHT) { // engine burn radial in for clockwise, radial out for counterclockwise
-                spacecraft.fireRight();
-            }
-            if (code == KeyEvent.VK_LEFT) { // engine burn radial in for counterclockwise, radial out for clockwise
-                spacecraft.fireLeft();
-            }
+        if (replay != null && code != KeyEvent.VK_V && code != KeyEvent.VK_F2 && code != KeyEvent.VK_F3) { // the flight controls are off in replays
+            replayKeyPressed(code);
+            return;
+        }
+        if (code == KeyEvent.VK_UP) { // prograde engine burn
+            fire(spacecraft::firePrograde);
+        }
+        if (code == KeyEvent.VK_DOWN) { // retrograde engine burn
+            fire(spacecraft::fireRetrograde);
+        }
+        if (code == KeyEvent.VK_RIGHT) { // engine burn radial in for clockwise, radial out for counterclockwise
+            fire(spacecraft::fireRight);
+        }
+        if (code == KeyEvent.VK_LEFT) { // engine burn radial in for counterclockwise, radial out for clockwise
+            fire(spacecraft::fireLeft);
         }
 
         if (code == KeyEvent.VK_COMMA){
-            Orbiter.warpDown();
+            physics.submit(engine::warpDown);
         }
         if (code == KeyEvent.VK_PERIOD){
-            Orbiter.warpUp();
+            physics.submit(engine::warpUp);
         }
         if (code == KeyEvent.VK_ESCAPE){ // pause/resume
-            if (timer.isRunning()) {
-                timer.stop();
-                space.repaint();
-            } else {
-                timer.start();
-            }
+            physics.setPaused(!physics.isPaused());
+            space.setPaused(physics.isPaused());
+        }
+        if (code == KeyEvent.VK_J){ // jump to the next event while coasting
+            physics.submit(engine::jumpToNextEvent);
+        }
+        if (code == KeyEvent.VK_B){ // N-body mode with a Barnes-Hut tree on/off
+            physics.submit(() -> engine.toggleNBody(asteroids));
+        }
+        if (code == KeyEvent.VK_F){ // add a constellation of craft around the first planet to the fleet
+            physics.submit(() -> System.out.println("Fleet of " + engine.launchConstellation(constellation) + " craft"));
         }
         if (code == KeyEvent.VK_SPACE){ // orbit reset button
-            System.out.println("Reset simulation");
-            spacecraft.reset();
-            resetPlanets();
-            date.reset();
+            physics.submit(engine::reset);
         }
         if (code == KeyEvent.VK_V){ // make camera focus on next object
             dragged = false;
             cameraIndex++;
-            cameraIndex = cameraIndex > 3 ? 0 : cameraIndex;
+            cameraIndex = cameraIndex > engine.getPlanets().size() + 1 + current.fleetX.length ? 0 : cameraIndex;
 
-            timeCameraPositionChanged = System.currentTimeMillis();
             setCameraPosition();
+            space.showCameraPosition(getCameraName());
             repaint();
         }
         if (code == KeyEvent.VK_PAGE_UP){
-            spacecraft.throttleUp();
+            physics.submit(spacecraft::throttleUp);
         }
         if (code == KeyEvent.VK_PAGE_DOWN){
-            spacecraft.throttleDown();
+            physics.submit(spacecraft::throttleDown);
         }
         if (code == KeyEvent.VK_F2){
-            showUI = !showUI;
+            space.toggleUI();
+        }
+        if (code == KeyEvent.VK_F3){ // performance overlay, the histograms start over when it is shown
+            Profiler.reset();
+            space.toggleProfiler();
+        }
+        if (code == KeyEvent.VK_N){ // place a maneuver node at the next apsis or remove it
+            physics.submit(() -> {
+                if (engine.getManeuverNode() == null) {
+                    engine.addManeuverNode();
+                } else {
+                    engine.removeManeuverNode();
+                }
+            });
+        }
+        if (code == KeyEvent.VK_OPEN_BRACKET){ // move the maneuver node back along the orbit
+            physics.submit(() -> engine.moveManeuverNode(-0.01));
+        }
+        if (code == KeyEvent.VK_CLOSE_BRACKET){ // move the maneuver node ahead along the orbit
+            physics.submit(() -> engine.moveManeuverNode(0.01));
+        }
+        if (code == KeyEvent.VK_C){ // closest approaches to the planets or moons over the next revolutions on/off
+            physics.submit(engine::toggleApproachSearch);
+        }
+        if (code == KeyEvent.VK_R){ // start/stop recording telemetry
+            if (engine.isRecording()) {
+                physics.submit(this::stopRecording);
+            } else {
+                Path file = Path.of("flight-" + System.currentTimeMillis() + ".telemetry");
+                recording = file;
+                physics.submit(() -> {
+                    try {
+                        engine.startRecording(file);
+                        System.out.println("Recording to " + file);
+                    } catch (IOException exception) {
+                        exception.printStackTrace();
+                    }
+                });
+            }
+        }
+        if (code == KeyEvent.VK_P && recording != null){ // replay the last recording, stops a recording in progress
+            physics.submit(() -> {
+                stopRecording();
+                SwingUtilities.invokeLater(this::openReplay);
+            });
         }
     }
 
-    public static void resetPlanets() {
-        for (Planet planet : getPlanets()) {
-            planet.reset();
+    // on the physics thread
+    private void stopRecording() {
+        if (engine.isRecording()) {
+            System.out.println("Recorded " + engine.stopRecording() + " steps");
         }
     }
 
+    private void fire(Runnable burn) {
+        physics.submit(() -> {
+            if (engine.getWarpIndex() < 3) {
+                burn.run();
+            }
+        });
+    }
+
     @Override
     public void keyReleased(KeyEvent e) {
         int code = e.getKeyCode();
         if (code == KeyEvent.VK_UP || code == KeyEvent.VK_DOWN || code == KeyEvent.VK_LEFT || code == KeyEvent.VK_RIGHT) {
-            spacecraft.engineAcceleration = false;
-        }
-    }
-
-    private class Space extends JPanel {
-        @Override
-        protected void paintComponent(Graphics graphics) {
-            super.paintComponent(graphics);
-            Graphics2D g2d = (Graphics2D) graphics;
-
-            // draw space
-            g2d.setColor(Color.BLACK);
-            g2d.fillRect(0, 0, xBound, yBound);
-
-            // draw orbit
-            if (showUI) {
-                g2d.setColor(Color.LIGHT_GRAY);
-                spacecraft.orbit.draw(g2d);
-
-                // draw extremes
-                spacecraft.orbit.drawPeriapsis(g2d);
-                spacecraft.orbit.drawApoapsis(g2d);
-
-                // draw SOI
-                spacecraft.orbit.drawSOI(g2d);
-            }
-
-            // draw celestialBodies
-            sun.draw(g2d);
-            earth.draw(g2d);
-            mars.draw(g2d);
-
-            // draw spacecraft
-            g2d.setColor(Color.WHITE);
-            spacecraft.draw(g2d);
-
-            if (showUI) {
-                // draw engine thrust direction
-                spacecraft.drawThrustVector(g2d);
-
-                // draw UI components:
-                Orbiter.drawWarpUI(g2d); // warp speeds
-            }
-
-            if (!timer.isRunning()) { // pause message
-                g2d.drawString("Simulation paused", xBound / 2 - 40, 25);
-            }
-            if (System.currentTimeMillis() - timeCameraPositionChanged < 2000) { // camera position message
-                g2d.drawString("Camera position: " + (dragged ? "free" : orbiter.name), xBound / 2 - 45, yBound - 50);
-            }
-
-            if (showUI) {
-                // UI backgrounds
-                g2d.setColor(Color.GRAY);
-                g2d.fillRect(0, yBound - 130, 193, 130); // orbit data
-                g2d.fillRect(xBound - 150, yBound - 90, 150, 90); // spacecraft data
-                g2d.fillRect(xBound - 100, 0, 100, 20); // date
-
-                // orbit, spacecraft data and date UI
-                g2d.setColor(Color.BLACK);
-                spacecraft.orbit.drawUI(g2d, yBound);
-                spacecraft.drawFlightDataUI(g2d, yBound);
-                spacecraft.drawPropellantUI(g2d, xBound, yBound);
-                date.drawUI(g2d, xBound);
-            }
+            physics.submit(() -> spacecraft.engineAcceleration = false);
         }
     }
 
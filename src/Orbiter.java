@@ -1,46 +1,21 @@
 import java.awt.*;
 
 public class Orbiter {
-    public static int warpIndex = 0;
     public static final int[] WARP_SPEEDS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+    public static final int EVENT_WARP = WARP_SPEEDS.length; // after the fastest warp speed: from event to event while coasting
     protected final Vector velocity = new Vector(0, 0);
     protected Vector position;
-    protected Vector oldPosition = new Vector(0, 0);
     protected int x_int, y_int; // pixel locations
     protected String name;
     protected static int xdrag = 0, ydrag = 0;
-    public static int subIndexMax = 0;
+    private static final HudText warpText = new HudText("Warp speed = %.0fx", 0);
+    private static final HudText eventWarpText = new HudText("Warp to the next event");
 
     Orbiter(String name){
         this.name = name;
-        updateSubIndexMax();
     }
 
-    public static void warpUp(){
-        warpIndex = Math.min(WARP_SPEEDS.length - 1, warpIndex + 1);
-        updateSubIndexMax();
-    }
-
-    public static void warpDown(){
-        warpIndex = Math.max(0, warpIndex - 1);
-        updateSubIndexMax();
-    }
-
-    protected static double getWarpSpeed() {
-        return WARP_SPEEDS[warpIndex];
-    }
-
-    protected static void updateSubIndexMax(){
-        if (warpIndex == 0){
-            subIndexMax = 9;
-        } else if (warpIndex == 1){
-            subIndexMax = 1;
-        } else {
-            subIndexMax = 0;
-        }
-    }
-
-    public static void drawWarpUI(Graphics2D g2d){
+    public static void drawWarpUI(Graphics2D g2d, int warpIndex){
         int [] x_triangle = new int[]{10, 10, 25};
         int [] y_triangle = {5, 25, 15};
 
@@ -54,6 +29,10 @@ public class Orbiter {
             g2d.fillPolygon(x_triangle, y_triangle, 3);
         }
         g2d.setColor(Color.WHITE);
-        g2d.drawString("Warp speed = " + WARP_SPEEDS[warpIndex] + "x", 10, 40);
+        if (warpIndex == EVENT_WARP) {
+            eventWarpText.draw(g2d, 10, 40);
+        } else {
+            warpText.draw(g2d, WARP_SPEEDS[warpIndex], 10, 40);
+        }
     }
 }
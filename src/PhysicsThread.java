@@ -0,0 +1,85 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// steps the engine at a fixed rate on its own thread, independent of painting on the EDT
+public class PhysicsThread {
+    private final SimulationEngine engine;
+    private final long stepNanos;
+    private final ScheduledExecutorService executor;
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private volatile Snapshot[] snapshots; // previous and current snapshot
+    private final ConcurrentLinkedQueue<Snapshot> returned = new ConcurrentLinkedQueue<>(); // by the renderer, their arrays are reused
+    private volatile boolean paused;
+
+    public PhysicsThread(SimulationEngine engine, double timeStep) {
+        this.engine = engine;
+        stepNanos = (long) (timeStep * 1e9);
+        Snapshot snapshot = new Snapshot(engine, null, null);
+        snapshots = new Snapshot[]{snapshot, snapshot};
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "physics");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleAtFixedRate(this::tick, stepNanos, stepNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // commands change the engine state, so they are run on the physics thread before the next step
+    public void submit(Runnable command) {
+        commands.add(command);
+    }
+
+    private void tick() {
+        long start = Profiler.start();
+        long allocated = Profiler.allocatedBytes();
+        try {
+            boolean changed = false;
+            Runnable command;
+            while ((command = commands.poll()) != null) {
+                command.run();
+                changed = true;
+            }
+            if (!paused) {
+                engine.step(1);
+                changed = true;
+            }
+            engine.updateApproachSearch();
+            if (changed) {
+                Snapshot current = snapshots[1];
+                snapshots = new Snapshot[]{current, new Snapshot(engine, current, returned.poll())};
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        Profiler.record(Profiler.Phase.STEP, start);
+        Profiler.recordAllocation(Profiler.Phase.STEP_ALLOCATION, allocated);
+    }
+
+    public Snapshot[] getSnapshots() {
+        return snapshots;
+    }
+
+    // Called by the renderer for a snapshot that left the published pair and that it will never read again. Painting
+    // runs whenever the EDT gets to it, so only the renderer knows when that is.
+    public void recycle(Snapshot snapshot) {
+        returned.add(snapshot);
+    }
+
+    // fraction of a step that has passed since the current snapshot was published
+    public double getInterpolationFactor(Snapshot current) {
+        return Math.min(1, (System.nanoTime() - current.wallTime) / (double) stepNanos);
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+}
@@ -2,26 +2,37 @@ import java.awt.*;
 
 public class Planet extends CelestialBody {
     protected final StaticOrbit staticOrbit;
+    protected final CelestialBody parent; // the body this planet orbits
 
-    public Planet(double radius, double SOI, double mu, Color color, double semiMajorAxis, double eccentricity, String name){
+    public Planet(CelestialBody parent, double radius, double SOI, double mu, Color color, double semiMajorAxis, double eccentricity, String name){
         super(radius, SOI, mu, color, name);
-        staticOrbit = new StaticOrbit(semiMajorAxis, eccentricity);
+        this.parent = parent;
+        parent.children.add(this);
+        staticOrbit = new StaticOrbit(semiMajorAxis, eccentricity, parent.mu);
+        position = staticOrbit.getPosition();
     }
 
-    public void update(double dt){
-        double timeStep = dt * Orbiter.getWarpSpeed();
-        position = staticOrbit.updatePosition(timeStep);
+    // only the mean anomaly moves on, so updating hundreds of planets costs next to nothing while they are not looked at
+    public void setTime(double time){
+        staticOrbit.setTime(time);
+    }
 
-        velocity.setX((position.getX() - oldPosition.getX()) / timeStep);
-        velocity.setY((position.getY() - oldPosition.getY()) / timeStep);
+    // position and velocity relative to the parent, solved from the orbit when they are outdated
+    public Vector getPosition(){
+        return staticOrbit.getPosition();
+    }
 
-        oldPosition.setX(position.getX());
-        oldPosition.setY(position.getY());
+    public Vector getVelocity(){
+        return staticOrbit.getVelocity();
+    }
 
+    public void updatePixelPosition(double x, double y) {
+        x_int = parent.x_int + (int) Math.round(OrbitCalculator.scaleFactor * x);
+        y_int = parent.y_int - (int) Math.round(OrbitCalculator.scaleFactor * y);
     }
 
-    public void reset(){
-        staticOrbit.reset();
+    public void reset(double trueAnomaly){
+        staticOrbit.reset(trueAnomaly);
     }
 
 }
@@ -0,0 +1,140 @@
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+// Transfer windows between two planets: the delta v of the Lambert transfer for a grid of departure times
+// (after now) and times of flight. The two planets orbit the same body, by default earth and mars. Export as CSV:
+// java Porkchop <departure window> <minimum time of flight> <maximum time of flight> <grid size> [seed] [file] [departure planet] [arrival planet]
+public class Porkchop {
+    private final Planet departurePlanet, arrivalPlanet;
+    private final double mu;
+    private final double departureWindow, minTimeOfFlight, maxTimeOfFlight;
+    private final int size;
+    private final double[][] departureDeltaV, arrivalDeltaV; // cached per grid cell, NaN until it is computed
+
+    public Porkchop(Planet departurePlanet, Planet arrivalPlanet, double departureWindow, double minTimeOfFlight, double maxTimeOfFlight, int size) {
+        if (departurePlanet == arrivalPlanet || departurePlanet.parent != arrivalPlanet.parent) {
+            throw new IllegalArgumentException("a transfer needs two different planets that orbit the same body, not "
+                    + departurePlanet.name + " and " + arrivalPlanet.name);
+        }
+        this.departurePlanet = departurePlanet;
+        this.arrivalPlanet = arrivalPlanet;
+        this.mu = departurePlanet.parent.mu;
+        this.departureWindow = departureWindow;
+        this.minTimeOfFlight = minTimeOfFlight;
+        this.maxTimeOfFlight = maxTimeOfFlight;
+        this.size = size;
+        departureDeltaV = new double[size][size];
+        arrivalDeltaV = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            Arrays.fill(departureDeltaV[i], Double.NaN);
+            Arrays.fill(arrivalDeltaV[i], Double.NaN);
+        }
+    }
+
+    public static void main(String[] args) throws FileNotFoundException {
+        double departureWindow = args.length > 0 ? Double.parseDouble(args[0]) : 100;
+        double minTimeOfFlight = args.length > 1 ? Double.parseDouble(args[1]) : 20;
+        double maxTimeOfFlight = args.length > 2 ? Double.parseDouble(args[2]) : 120;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        SimulationEngine engine = args.length > 4 ? new SimulationEngine(Long.parseLong(args[4])) : new SimulationEngine();
+        PrintStream out = args.length > 5 ? new PrintStream(args[5]) : System.out;
+        Planet departurePlanet = getPlanet(engine, args.length > 6 ? args[6] : "earth");
+        Planet arrivalPlanet = getPlanet(engine, args.length > 7 ? args[7] : "mars");
+
+        Porkchop porkchop = new Porkchop(departurePlanet, arrivalPlanet, departureWindow, minTimeOfFlight, maxTimeOfFlight, size);
+        long beginTime = System.currentTimeMillis();
+        porkchop.computeAll();
+        long endTime = System.currentTimeMillis();
+
+        porkchop.writeCsv(out);
+        out.flush();
+        System.err.println(size + " x " + size + " grid in " + (endTime - beginTime) + " ms");
+
+        int[] best = porkchop.getMinimum();
+        System.err.println(String.format(Locale.ROOT, "Minimum total delta v = %.4f, departure after %.3f with time of flight %.3f",
+                porkchop.getTotalDeltaV(best[0], best[1]), porkchop.getDepartureTime(best[0]), porkchop.getTimeOfFlight(best[1])));
+    }
+
+    private static Planet getPlanet(SimulationEngine engine, String name) {
+        for (Planet planet : engine.getPlanets()) {
+            if (planet.name.equals(name)) {
+                return planet;
+            }
+        }
+        throw new IllegalArgumentException("unknown planet " + name);
+    }
+
+    public double getDepartureTime(int i) {
+        return size > 1 ? departureWindow * i / (size - 1) : 0;
+    }
+
+    public double getTimeOfFlight(int j) {
+        return size > 1 ? minTimeOfFlight + (maxTimeOfFlight - minTimeOfFlight) * j / (size - 1) : minTimeOfFlight;
+    }
+
+    // rows of departure times are computed in parallel
+    public void computeAll() {
+        IntStream.range(0, size).parallel().forEach(i -> {
+            for (int j = 0; j < size; j++) {
+                getTotalDeltaV(i, j);
+            }
+        });
+    }
+
+    // hyperbolic excess velocities at departure and arrival, infinite where there is no transfer
+    public double getTotalDeltaV(int i, int j) {
+        if (Double.isNaN(departureDeltaV[i][j])) {
+            compute(i, j);
+        }
+        return departureDeltaV[i][j] + arrivalDeltaV[i][j];
+    }
+
+    private void compute(int i, int j) {
+        Vector departurePosition = new Vector(0, 0);
+        Vector departureVelocity = new Vector(0, 0);
+        Vector arrivalPosition = new Vector(0, 0);
+        Vector arrivalVelocity = new Vector(0, 0);
+        Vector transferDepartureVelocity = new Vector(0, 0);
+        Vector transferArrivalVelocity = new Vector(0, 0);
+
+        double departureTime = getDepartureTime(i);
+        double timeOfFlight = getTimeOfFlight(j);
+        departurePlanet.staticOrbit.getStateAfter(departureTime, departurePosition, departureVelocity);
+        arrivalPlanet.staticOrbit.getStateAfter(departureTime + timeOfFlight, arrivalPosition, arrivalVelocity);
+
+        if (Lambert.solve(departurePosition, arrivalPosition, timeOfFlight, mu, transferDepartureVelocity, transferArrivalVelocity)) {
+            arrivalDeltaV[i][j] = transferArrivalVelocity.subtract(arrivalVelocity, transferArrivalVelocity).getAbs();
+            departureDeltaV[i][j] = transferDepartureVelocity.subtract(departureVelocity, transferDepartureVelocity).getAbs();
+        } else {
+            arrivalDeltaV[i][j] = Double.POSITIVE_INFINITY;
+            departureDeltaV[i][j] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    public int[] getMinimum() {
+        int[] best = {0, 0};
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (getTotalDeltaV(i, j) < getTotalDeltaV(best[0], best[1])) {
+                    best[0] = i;
+                    best[1] = j;
+                }
+            }
+        }
+        return best;
+    }
+
+    public void writeCsv(PrintStream out) {
+        out.println("departure,time of flight,departure delta v,arrival delta v,total delta v");
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                double totalDeltaV = getTotalDeltaV(i, j);
+                out.println(String.format(Locale.ROOT, "%.5f,%.5f,%.6f,%.6f,%.6f",
+                        getDepartureTime(i), getTimeOfFlight(j), departureDeltaV[i][j], arrivalDeltaV[i][j], totalDeltaV));
+            }
+        }
+    }
+}
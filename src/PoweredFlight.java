@@ -0,0 +1,156 @@
+// Integrates the spacecraft during a burn: gravity of the orbited body plus thrust along a direction relative to the
+// velocity, while the mass decreases at the fuel rate. Adaptive Dormand-Prince 5(4) Runge-Kutta method.
+// Near zero speed the velocity gives no direction. Once a burn gets there, e.g. a retrograde burn that cancelled the
+// velocity, the thrust keeps the last direction it had until the burn ends, like a spacecraft holding its attitude.
+public class PoweredFlight {
+    private static final double TOLERANCE = 1e-10; // relative to the size of each state variable
+    private static final double SAFETY = 0.9;
+    private static final double MIN_FACTOR = 0.2, MAX_FACTOR = 5;
+    private static final int MAX_STEPS = 10000; // per call to integrate, in case the step size collapses
+    private static final double STOP_SPEED = 1e-6; // relative to the circular speed at the start
+    private static final int SIZE = 5; // x, y, vx, vy, mass
+
+    // Butcher tableau, the last row of A is also the fifth order solution
+    private static final double[][] A = {
+            {},
+            {1.0 / 5},
+            {3.0 / 40, 9.0 / 40},
+            {44.0 / 45, -56.0 / 15, 32.0 / 9},
+            {19372.0 / 6561, -25360.0 / 2187, 64448.0 / 6561, -212.0 / 729},
+            {9017.0 / 3168, -355.0 / 33, 46732.0 / 5247, 49.0 / 176, -5103.0 / 18656},
+            {35.0 / 384, 0, 500.0 / 1113, 125.0 / 192, -2187.0 / 6784, 11.0 / 84}};
+    // difference between the fifth and the fourth order solution
+    private static final double[] E = {71.0 / 57600, 0, -71.0 / 16695, 71.0 / 1920, -17253.0 / 339200, 22.0 / 525, -1.0 / 40};
+
+    private final double[] state = new double[SIZE];
+    private final double[] next = new double[SIZE];
+    private final double[] stage = new double[SIZE];
+    private final double[][] k = new double[7][SIZE];
+    private double stepSize;
+    private double mu, fuelRate, equivalentVelocity;
+    private double cosEngineMode, sinEngineMode; // thrust direction relative to the velocity
+    private double stopSpeed;
+    private double holdX = 1, holdY = 0; // direction of the velocity at the last state that had one
+    private boolean directionHeld; // the speed came near zero during this burn
+
+    public void start(Vector position, Vector velocity, double mass, double mu) {
+        state[0] = position.getX();
+        state[1] = position.getY();
+        state[2] = velocity.getX();
+        state[3] = velocity.getY();
+        state[4] = mass;
+        this.mu = mu;
+        double distance = position.getAbs();
+        stopSpeed = STOP_SPEED * Math.sqrt(mu / distance);
+        directionHeld = false;
+        updateHold();
+        stepSize = Math.min(1, 0.01 * Math.sqrt(distance * distance * distance / mu)); // a small part of an orbit
+    }
+
+    // fuelRate is the mass burned per unit of time. Throws an IllegalStateException when the step size collapses, the
+    // state is then left at an earlier time of the interval.
+    public void integrate(double time, double fuelRate, double equivalentVelocity, double engineModeDirection) {
+        this.fuelRate = fuelRate;
+        this.equivalentVelocity = equivalentVelocity;
+        cosEngineMode = Math.cos(engineModeDirection);
+        sinEngineMode = Math.sin(engineModeDirection);
+
+        double remaining = time;
+        for (int i = 0; remaining > 0; i++) {
+            if (i == MAX_STEPS) {
+                throw new IllegalStateException("step size collapsed with " + remaining + " of " + time + " left");
+            }
+            boolean lastStep = stepSize >= remaining;
+            double h = lastStep ? remaining : stepSize;
+            double error = attemptStep(h);
+            if (Double.isNaN(error)) {
+                error = Double.POSITIVE_INFINITY; // rejected like any other step that is too large
+            }
+
+            if (error <= 1) {
+                System.arraycopy(next, 0, state, 0, SIZE);
+                remaining -= h;
+                updateHold();
+                if (lastStep) {
+                    break; // a step shortened to the end of the interval says nothing about the step size
+                }
+            }
+            double factor = error == 0 ? MAX_FACTOR : SAFETY * Math.pow(error, -0.2);
+            stepSize = h * Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, factor));
+        }
+    }
+
+    private void updateHold() {
+        double speed = getSpeed(state);
+        if (speed < stopSpeed) {
+            directionHeld = true;
+        } else if (!directionHeld) {
+            holdX = state[2] / speed;
+            holdY = state[3] / speed;
+        }
+    }
+
+    private static double getSpeed(double[] y) {
+        return Math.sqrt(y[2] * y[2] + y[3] * y[3]);
+    }
+
+    // fifth order step into next, returns the estimated error relative to the tolerance
+    private double attemptStep(double h) {
+        derivative(state, k[0]);
+        for (int s = 1; s < 7; s++) {
+            for (int j = 0; j < SIZE; j++) {
+                double sum = 0;
+                for (int m = 0; m < s; m++) {
+                    sum += A[s][m] * k[m][j];
+                }
+                stage[j] = state[j] + h * sum;
+            }
+            derivative(stage, k[s]);
+        }
+        System.arraycopy(stage, 0, next, 0, SIZE);
+
+        double error = 0;
+        for (int j = 0; j < SIZE; j++) {
+            double sum = 0;
+            for (int s = 0; s < 7; s++) {
+                sum += E[s] * k[s][j];
+            }
+            error = Math.max(error, Math.abs(h * sum) / (TOLERANCE * (1 + Math.abs(state[j]))));
+        }
+        return error;
+    }
+
+    private void derivative(double[] y, double[] dydt) {
+        double distance = Math.sqrt(y[0] * y[0] + y[1] * y[1]);
+        double gravity = -mu / (distance * distance * distance);
+        double speed = getSpeed(y);
+        boolean held = directionHeld || speed < stopSpeed;
+        double directionX = held ? holdX : y[2] / speed;
+        double directionY = held ? holdY : y[3] / speed;
+        double thrust = fuelRate * equivalentVelocity / y[4];
+
+        dydt[0] = y[2];
+        dydt[1] = y[3];
+        dydt[2] = gravity * y[0] + thrust * (directionX * cosEngineMode - directionY * sinEngineMode);
+        dydt[3] = gravity * y[1] + thrust * (directionX * sinEngineMode + directionY * cosEngineMode);
+        dydt[4] = -fuelRate;
+    }
+
+    public void getState(Vector position, Vector velocity) {
+        position.setX(state[0]);
+        position.setY(state[1]);
+        velocity.setX(state[2]);
+        velocity.setY(state[3]);
+    }
+
+    // angle of the thrust at the current state
+    public double getThrustAngle() {
+        double speed = getSpeed(state);
+        double angle = directionHeld || speed < stopSpeed ? Math.atan2(holdY, holdX) : Math.atan2(state[3], state[2]);
+        return angle + Math.atan2(sinEngineMode, cosEngineMode);
+    }
+
+    public double getMass() {
+        return state[4];
+    }
+}
@@ -0,0 +1,194 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.awt.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Timers for the phases of a physics step and of a frame. Every phase keeps a histogram with eight buckets per power
+// of two, so recording a value is a clock read, a leading zero count and an increment. Timed phases are also emitted
+// as JFR events while a flight recording runs, e.g. java -XX:StartFlightRecording=filename=flight.jfr OrbitCalculator
+public class Profiler {
+    public enum Phase {
+        DATE("date.update", false),
+        PLANETS("Planet.setTime", false),
+        SPACECRAFT("Spacecraft.update", false),
+        FLEET("Fleet.update", false),
+        RECALCULATE_ORBIT("recalculateOrbit", false),
+        APPROACH_SEARCH("closest approaches", false),
+        STEP("physics step", false),
+        STEP_ALLOCATION("step allocation", true),
+        PIXEL_POSITIONS("updatePixelPosition", false),
+        PAINT("paintComponent", false),
+        FRAME_ALLOCATION("frame allocation", true);
+
+        final String label;
+        final boolean bytes; // allocated bytes instead of nanoseconds
+        final Histogram histogram = new Histogram();
+
+        Phase(String label, boolean bytes) {
+            this.label = label;
+            this.bytes = bytes;
+        }
+    }
+
+    @Name("OrbitCalculator.Phase")
+    @Label("Phase")
+    @Category("OrbitCalculator")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed; // the duration of the event itself would need the event to exist before the phase starts
+    }
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean allocationSupported = threads instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported();
+    private static final int BUCKETS = 8 * 62;
+
+    // start of a timed phase, passed to record
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public static void record(Phase phase, long start) {
+        long duration = System.nanoTime() - start;
+        phase.histogram.add(duration);
+
+        PhaseEvent event = new PhaseEvent(); // not allocated when JFR is off, the JIT removes it
+        if (event.shouldCommit()) {
+            event.phase = phase.label;
+            event.elapsed = duration;
+            event.commit();
+        }
+    }
+
+    // bytes allocated by the current thread so far, -1 when the JVM does not count them
+    public static long allocatedBytes() {
+        return allocationSupported ? ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    public static void recordAllocation(Phase phase, long allocatedBefore) {
+        if (allocatedBefore >= 0) {
+            phase.histogram.add(allocatedBytes() - allocatedBefore);
+        }
+    }
+
+    public static void reset() {
+        for (Phase phase : Phase.values()) {
+            phase.histogram.reset();
+        }
+    }
+
+    // one line per phase with the number of values, the median, the 99th percentile and the maximum
+    public static String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            summary.append(format(phase)).append('\n');
+        }
+        return summary.append(gcSummary()).append('\n').toString();
+    }
+
+    public static void drawUI(Graphics2D g2d, int y) {
+        Phase[] phases = Phase.values();
+        g2d.setColor(Color.GRAY);
+        g2d.fillRect(0, y, 430, 15 * phases.length + 25);
+        g2d.setColor(Color.BLACK);
+        for (int i = 0; i < phases.length; i++) {
+            g2d.drawString(format(phases[i]), 8, y + 15 * i + 15);
+        }
+        g2d.drawString(gcSummary(), 8, y + 15 * phases.length + 15);
+    }
+
+    private static String format(Phase phase) {
+        Histogram histogram = phase.histogram;
+        long count = histogram.getCount();
+        if (phase.bytes) {
+            return String.format("%-20s %8d  p50 %7d B  p99 %8d B  max %9d B", phase.label, count,
+                    histogram.getPercentile(0.5), histogram.getPercentile(0.99), histogram.getMax());
+        }
+        return String.format("%-20s %8d  p50 %6.1f us  p99 %7.1f us  max %8.1f us", phase.label, count,
+                histogram.getPercentile(0.5) * 1e-3, histogram.getPercentile(0.99) * 1e-3, histogram.getMax() * 1e-3);
+    }
+
+    private static String gcSummary() {
+        long collections = 0, time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, collector.getCollectionCount());
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return "GC: " + collections + " collections in " + time + " ms since start";
+    }
+
+    // Counts per bucket are atomic, so the engines of a Monte Carlo sweep can record into the same histogram. Values
+    // below 8 have a bucket each, above that a power of two is split into eight buckets, a resolution of 12.5%.
+    static class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        void add(long value) {
+            value = Math.max(0, value);
+            counts.incrementAndGet(bucket(value));
+            if (value > max.get()) {
+                max.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        static int bucket(long value) {
+            if (value < 8) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return Math.min(BUCKETS - 1, 8 * (exponent - 2) + (int) (value >>> (exponent - 3) & 7));
+        }
+
+        static long lowerBound(int bucket) {
+            if (bucket < 8) {
+                return bucket;
+            }
+            return (long) (8 + bucket % 8) << (bucket / 8 - 1);
+        }
+
+        long getCount() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        // lower bound of the bucket that holds the percentile
+        long getPercentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * getCount());
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    return lowerBound(i);
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            max.set(0);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Barnes-Hut quadtree over point masses, stored in flat arrays so it can be rebuilt every step without allocation.
+// A node that is small compared to its distance acts as one mass at its centre of mass.
+// The bodies are sorted by their Morton code, the index of their cell at the deepest level with the bits of x and y
+// interleaved, so every node is a run of consecutive sorted bodies. The codes and the sort are computed in parallel,
+// the top levels are laid out on one thread and the subtrees below them are counted and filled in parallel.
+public class QuadTree {
+    private static final int LEVELS = 20; // bodies closer together than the root size over 2^20 share a leaf
+    private static final int INDEX_BITS = 23; // below the code in the sort keys, so at most 2^23 bodies
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final int TOP_DEPTH = 3; // up to 64 subtrees that are filled in parallel
+    private static final int CHUNK_SIZE = 4096; // bodies per parallel task when computing the codes
+    private static final int EMPTY = -1, SHARED = -2; // body of a leaf without a body or with more than one
+    private double[] x, y, mu; // the bodies of the last build
+    private double rootSize;
+    private int nodeCount;
+    private int[] firstChild = new int[0]; // index of the first of four children, -1 for a leaf
+    private int[] body = new int[0];
+    private double[] packed = new double[0]; // centre of mass, mass and squared size of every node next to each other for the walks
+    private long[] keys = new long[0]; // Morton code and body index, sorted
+    private int[] order = new int[0]; // bodies in depth first order, so consecutive bodies are close to each other
+    private int orderCount;
+
+    // nodes at the top depth, or leaves above it, with their bodies, filled in parallel
+    private int[] subtreeNode = new int[0], subtreeFirst = new int[0], subtreeLast = new int[0], subtreeDepth = new int[0];
+    private int[] subtreeStart = new int[0];
+    private int subtrees;
+
+    public void build(double[] x, double[] y, double[] mu, int count) {
+        if (count > INDEX_MASK + 1) {
+            throw new IllegalArgumentException("more than " + (INDEX_MASK + 1) + " bodies");
+        }
+        this.x = x;
+        this.y = y;
+        this.mu = mu;
+        if (keys.length < count) {
+            keys = new long[count];
+            order = new int[count];
+            orderCount = 0;
+        }
+        // bodies hardly move between builds, in the previous order the codes are nearly sorted already
+        boolean reuseOrder = orderCount == count;
+        orderCount = count;
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        rootSize = Math.max(maxX - minX, maxY - minY) + 1e-9;
+        double originX = minX, originY = minY;
+        double scale = (1 << LEVELS) / rootSize;
+        IntStream.range(0, (count + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+            for (int k = chunk * CHUNK_SIZE; k < Math.min(count, (chunk + 1) * CHUNK_SIZE); k++) {
+                int i = reuseOrder ? order[k] : k;
+                long cellX = Math.min((1 << LEVELS) - 1, (long) ((x[i] - originX) * scale));
+                long cellY = Math.min((1 << LEVELS) - 1, (long) ((y[i] - originY) * scale));
+                keys[k] = (spread(cellX) | spread(cellY) << 1) << INDEX_BITS | i;
+            }
+        });
+        Arrays.parallelSort(keys, 0, count);
+
+        // the top levels, which also fixes where each subtree below them starts
+        ensureCapacity(1);
+        subtrees = 0;
+        nodeCount = 1;
+        layOutTop(0, 0, count, 0);
+        if (subtreeStart.length < subtrees) {
+            subtreeStart = new int[subtreeNode.length];
+        }
+        IntStream.range(0, subtrees).parallel().forEach(s -> subtreeStart[s] = countBelow(subtreeFirst[s], subtreeLast[s], subtreeDepth[s]));
+        for (int s = 0; s < subtrees; s++) { // the counts become the starts
+            int below = subtreeStart[s];
+            subtreeStart[s] = nodeCount;
+            nodeCount += below;
+        }
+        ensureCapacity(nodeCount);
+        IntStream.range(0, subtrees).parallel().forEach(s -> {
+            fill(subtreeNode[s], subtreeFirst[s], subtreeLast[s], subtreeDepth[s], subtreeStart[s]);
+            for (int k = subtreeFirst[s]; k < subtreeLast[s]; k++) {
+                order[k] = (int) (keys[k] & INDEX_MASK);
+            }
+        });
+        sumTop(0, 0);
+    }
+
+    // spreads the 20 bits of a cell index over the even bits
+    private static long spread(long value) {
+        value = (value | value << 16) & 0x0000FFFF0000FFFFL;
+        value = (value | value << 8) & 0x00FF00FF00FF00FFL;
+        value = (value | value << 4) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | value << 2) & 0x3333333333333333L;
+        return (value | value << 1) & 0x5555555555555555L;
+    }
+
+    // the quadrant of the sorted body at a depth below the root, the x bit is the lower one
+    private int quadrant(int k, int depth) {
+        return (int) (keys[k] >>> INDEX_BITS + 2 * (LEVELS - 1 - depth)) & 3;
+    }
+
+    // first sorted body from first to last that lies in the given quadrant or one after it
+    private int findQuadrant(int first, int last, int depth, int quadrant) {
+        while (first < last) {
+            int middle = (first + last) >>> 1;
+            if (quadrant(middle, depth) < quadrant) {
+                first = middle + 1;
+            } else {
+                last = middle;
+            }
+        }
+        return first;
+    }
+
+    private boolean isLeaf(int first, int last, int depth) {
+        return last - first <= 1 || depth == LEVELS;
+    }
+
+    // the four children of a node follow each other, the node is split into them before anything below is laid out
+    private void layOutTop(int node, int first, int last, int depth) {
+        if (depth == TOP_DEPTH || isLeaf(first, last, depth)) {
+            if (subtreeNode.length == subtrees) {
+                int length = Math.max(16, 2 * subtrees);
+                subtreeNode = Arrays.copyOf(subtreeNode, length);
+                subtreeFirst = Arrays.copyOf(subtreeFirst, length);
+                subtreeLast = Arrays.copyOf(subtreeLast, length);
+                subtreeDepth = Arrays.copyOf(subtreeDepth, length);
+            }
+            subtreeNode[subtrees] = node;
+            subtreeFirst[subtrees] = first;
+            subtreeLast[subtrees] = last;
+            subtreeDepth[subtrees] = depth;
+            subtrees++;
+            return;
+        }
+        int child = nodeCount;
+        nodeCount += 4;
+        ensureCapacity(nodeCount);
+        double size = rootSize / (1 << depth);
+        packed[4 * node + 3] = size * size;
+        firstChild[node] = child;
+        body[node] = EMPTY;
+        for (int q = 0; q < 4; q++) {
+            int end = q == 3 ? last : findQuadrant(first, last, depth, q + 1);
+            layOutTop(child + q, first, end, depth + 1);
+            first = end;
+        }
+    }
+
+    // number of nodes below a node, which is 0 for a leaf
+    private int countBelow(int first, int last, int depth) {
+        if (isLeaf(first, last, depth)) {
+            return 0;
+        }
+        int count = 4;
+        for (int q = 0; q < 4; q++) {
+            int end = q == 3 ? last : findQuadrant(first, last, depth, q + 1);
+            count += countBelow(first, end, depth + 1);
+            first = end;
+        }
+        return count;
+    }
+
+    // fills a node and the nodes below it from next on, their centres of mass are summed on the way back up
+    private int fill(int node, int first, int last, int depth, int next) {
+        double size = rootSize / (1 << depth);
+        packed[4 * node + 3] = size * size;
+        if (isLeaf(first, last, depth)) {
+            firstChild[node] = -1;
+            body[node] = last == first ? EMPTY : last - first == 1 ? (int) (keys[first] & INDEX_MASK) : SHARED;
+            double mass = 0, momentX = 0, momentY = 0;
+            for (int k = first; k < last; k++) {
+                int i = (int) (keys[k] & INDEX_MASK);
+                mass += mu[i];
+                momentX += mu[i] * x[i];
+                momentY += mu[i] * y[i];
+            }
+            setCentreOfMass(node, mass, momentX, momentY);
+            return next;
+        }
+        int child = next;
+        firstChild[node] = child;
+        body[node] = EMPTY;
+        next += 4;
+        for (int q = 0; q < 4; q++) {
+            int end = q == 3 ? last : findQuadrant(first, last, depth, q + 1);
+            next = fill(child + q, first, end, depth + 1, next);
+            first = end;
+        }
+        sumChildren(node);
+        return next;
+    }
+
+    // the top levels once the subtrees below them are filled
+    private void sumTop(int node, int depth) {
+        if (depth == TOP_DEPTH || firstChild[node] < 0) {
+            return;
+        }
+        for (int q = 0; q < 4; q++) {
+            sumTop(firstChild[node] + q, depth + 1);
+        }
+        sumChildren(node);
+    }
+
+    private void sumChildren(int node) {
+        double mass = 0, momentX = 0, momentY = 0;
+        for (int q = 0; q < 4; q++) {
+            int child = firstChild[node] + q;
+            double m = packed[4 * child + 2];
+            mass += m;
+            momentX += m * packed[4 * child];
+            momentY += m * packed[4 * child + 1];
+        }
+        setCentreOfMass(node, mass, momentX, momentY);
+    }
+
+    private void setCentreOfMass(int node, double mass, double momentX, double momentY) {
+        packed[4 * node] = mass > 0 ? momentX / mass : 0;
+        packed[4 * node + 1] = mass > 0 ? momentY / mass : 0;
+        packed[4 * node + 2] = mass;
+    }
+
+    // Acceleration at body i, written to acceleration. The stack holds nodes still to be visited and is passed in so
+    // every thread has its own. Softening keeps close encounters finite.
+    public void accelerate(int i, double theta, double softening, int[] stack, double[] acceleration) {
+        double px = x[i], py = y[i];
+        double ax = 0, ay = 0;
+        double thetaSquared = theta * theta;
+        double softeningSquared = softening * softening;
+
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            double m = packed[4 * node + 2];
+            if (m == 0 || body[node] == i) {
+                continue;
+            }
+            double dx = packed[4 * node] - px;
+            double dy = packed[4 * node + 1] - py;
+            double distanceSquared = dx * dx + dy * dy + softeningSquared;
+
+            if (firstChild[node] < 0 || packed[4 * node + 3] < thetaSquared * distanceSquared) {
+                double factor = m / (distanceSquared * Math.sqrt(distanceSquared));
+                ax += factor * dx;
+                ay += factor * dy;
+            } else {
+                int child = firstChild[node];
+                stack[top++] = child;
+                stack[top++] = child + 1;
+                stack[top++] = child + 2;
+                stack[top++] = child + 3;
+            }
+        }
+        acceleration[0] = ax;
+        acceleration[1] = ay;
+    }
+
+    public int[] getOrder() {
+        return order;
+    }
+
+    // enough for a walk through the deepest possible tree
+    public static int[] createStack() {
+        return new int[3 * LEVELS + 4];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > firstChild.length) {
+            int length = Math.max(capacity, 2 * firstChild.length);
+            firstChild = Arrays.copyOf(firstChild, length);
+            body = Arrays.copyOf(body, length);
+            packed = Arrays.copyOf(packed, 4 * length);
+        }
+    }
+}
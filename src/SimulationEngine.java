@@ -0,0 +1,378 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class SimulationEngine {
+    public final static double timeStep = 0.0001; // simulated time per step at warp speed 1
+    private final static double EVENT_MARGIN = 1e-9; // a jump ends just after the event, so it is handled in that step
+    private final Star sun;
+    private final ArrayList<Planet> planets;
+    private final Spacecraft spacecraft;
+    private final Fleet fleet; // coasting craft in bulk, next to the spacecraft that is flown
+    private final Date date;
+    private final Random random;
+    private final ArrayList<Burn> burns = new ArrayList<>(); // scheduled burns, sorted by start time
+    private final ArrayList<SimulationListener> listeners = new ArrayList<>();
+    private NBody nBody; // replaces the patched conics while it is switched on
+    private ManeuverNode maneuverNode; // a planned burn that is only previewed, null without one
+    private final ApproachSearch approachSearch = new ApproachSearch();
+    private boolean searchApproaches;
+    private volatile TelemetryRecorder recorder; // writes the state after every step while recording
+    private double time;
+    private double planetEpoch; // time at which the planets were reset, the time of the planets is measured from it
+    private double planetTime; // time the planets are at, the end of the step while one is taken
+    private int warpIndex = 0;
+
+    public SimulationEngine() {
+        this(new Random(), SolarSystem.load());
+    }
+
+    // the seed fixes the starting positions of the planets, also after a crash
+    public SimulationEngine(long seed) {
+        this(new Random(seed), SolarSystem.load());
+    }
+
+    public SimulationEngine(long seed, SolarSystem system) {
+        this(new Random(seed), system);
+    }
+
+    private SimulationEngine(Random random, SolarSystem system) {
+        this.random = random;
+        sun = system.sun;
+        planets = system.planets;
+        resetPlanets();
+
+        spacecraft = new Spacecraft(this, planets.get(0));
+        spacecraft.initStartVectors(); // spacecraft starts in circular orbit around the first planet
+        date = new Date(planets.get(0).staticOrbit.getPeriod());
+        fleet = new Fleet(sun, planets);
+    }
+
+    // headless run without a display: java SimulationEngine <simulated time> [warp index] [system file] [telemetry file]
+    public static void main(String[] args) throws IOException {
+        double endTime = args.length > 0 ? Double.parseDouble(args[0]) : 100;
+        SimulationEngine engine = args.length > 2 ? new SimulationEngine(new Random(), SolarSystem.load(Path.of(args[2]))) : new SimulationEngine();
+        engine.addListener(SimulationListener.CONSOLE);
+        if (args.length > 1) {
+            engine.setWarpIndex(Integer.parseInt(args[1]));
+        }
+        if (args.length > 3) {
+            engine.startRecording(Path.of(args[3]));
+            System.out.println("Recording to " + args[3]);
+        }
+
+        long beginTime = System.currentTimeMillis();
+        engine.runUntil(endTime);
+        long endTimeMillis = System.currentTimeMillis();
+        if (engine.isRecording()) {
+            System.out.println("Recorded " + engine.stopRecording() + " steps");
+        }
+        System.out.print(Profiler.summary());
+
+        System.out.println("Simulated " + engine.time + " in " + (endTimeMillis - beginTime) + " ms");
+        System.out.println("Date: " + engine.date);
+        System.out.println("Orbit is around " + engine.spacecraft.orbit.celestialBody.name);
+    }
+
+    public void step(int n) {
+        for (int i = 0; i < n; i++) {
+            step();
+        }
+    }
+
+    // jumps from event to event while coasting, only powered flight is stepped at the warp speed
+    public void runUntil(double endTime) {
+        while (time < endTime) {
+            if (nBody == null && isCoasting()) {
+                advance(Math.min(endTime - time, getTimeToNextEvent() + EVENT_MARGIN));
+            } else {
+                step();
+            }
+        }
+    }
+
+    public void jumpToNextEvent() {
+        double timeToEvent = getTimeToNextEvent();
+        if (nBody == null && isCoasting() && timeToEvent < Double.POSITIVE_INFINITY) {
+            advance(timeToEvent + EVENT_MARGIN);
+        }
+    }
+
+    // time until the spacecraft changes SOI, passes an apsis, crashes, a scheduled burn starts or a maneuver node is reached
+    // the date needs no event, it follows the time, and the fleet checks a jump of any length for SOI changes itself
+    public double getTimeToNextEvent() {
+        double timeToEvent = spacecraft.getTimeToNextEvent();
+        if (!burns.isEmpty()) {
+            timeToEvent = Math.min(timeToEvent, Math.max(0, burns.get(0).startTime - time));
+        }
+        if (maneuverNode != null) {
+            timeToEvent = Math.min(timeToEvent, Math.max(0, maneuverNode.getTime() - time));
+        }
+        return timeToEvent;
+    }
+
+    private boolean isCoasting() {
+        return !spacecraft.engineAcceleration && (burns.isEmpty() || time < burns.get(0).startTime);
+    }
+
+    // the event warp jumps to the next event in one step, so it is as fast as the events are far apart
+    private void step() {
+        if (warpIndex == Orbiter.EVENT_WARP && nBody == null && isCoasting()) {
+            double timeToEvent = getTimeToNextEvent();
+            advance(timeToEvent < Double.POSITIVE_INFINITY ? timeToEvent + EVENT_MARGIN : timeStep * getWarpSpeed());
+        } else {
+            advance(timeStep * getWarpSpeed());
+        }
+    }
+
+    private void advance(double dt) {
+        if (nBody != null) {
+            nBody.step(dt);
+            time += dt;
+            planetTime = time;
+            planetEpoch += dt; // the planets stand still while the N-body simulation runs
+            date.update(time);
+            return;
+        }
+
+        long start = Profiler.start();
+        planetTime = time + dt;
+        for (Planet planet : planets) {
+            planet.setTime(planetTime - planetEpoch);
+        }
+        Profiler.record(Profiler.Phase.PLANETS, start);
+
+        if (!burns.isEmpty()) {
+            updateBurns();
+        }
+        start = Profiler.start();
+        spacecraft.update(dt);
+        Profiler.record(Profiler.Phase.SPACECRAFT, start);
+        start = Profiler.start();
+        fleet.update(dt);
+        Profiler.record(Profiler.Phase.FLEET, start);
+        time += dt;
+
+        start = Profiler.start();
+        date.update(time);
+        Profiler.record(Profiler.Phase.DATE, start);
+        updateManeuverNode();
+
+        if (recorder != null) {
+            try {
+                recorder.record(this);
+            } catch (IOException e) {
+                e.printStackTrace();
+                stopRecording();
+            }
+        }
+    }
+
+    private void updateBurns() {
+        Burn burn = burns.get(0);
+        if (time >= burn.getEndTime()) {
+            spacecraft.engineAcceleration = false;
+            burns.remove(0);
+        } else if (time >= burn.startTime) {
+            spacecraft.setThrottle(burn.throttleIndex);
+            spacecraft.fire(burn.direction);
+        }
+    }
+
+    public void endRunningBurn() {
+        if (!burns.isEmpty() && time >= burns.get(0).startTime) {
+            burns.remove(0);
+        }
+    }
+
+    public void addBurn(Burn burn) {
+        int i = 0;
+        while (i < burns.size() && burns.get(i).startTime <= burn.startTime) {
+            i++;
+        }
+        burns.add(i, burn);
+    }
+
+    public void addListener(SimulationListener listener) {
+        listeners.add(listener);
+    }
+
+    // the time of the event itself, which can lie anywhere inside the current step
+    public void fireEvent(SimulationListener.Event event, CelestialBody body, double time) {
+        for (SimulationListener listener : listeners) {
+            listener.onEvent(event, body, time);
+        }
+    }
+
+    public void reset() {
+        burns.clear();
+        maneuverNode = null;
+        fleet.clear();
+        spacecraft.reset();
+        resetPlanets();
+        date.reset(time);
+        fireEvent(SimulationListener.Event.RESET, spacecraft.orbit.celestialBody, time);
+    }
+
+    // also during a step, after the planets were moved to its end, so they are reset at that time
+    public void resetPlanets() {
+        approachSearch.clear(); // a running search uses the phases of the planets from before
+        planetEpoch = planetTime;
+        for (Planet planet : planets) {
+            planet.reset(random.nextDouble() * 2 * Math.PI);
+        }
+    }
+
+    // starts from the current state of the sun, planets and spacecraft, which are left as they are while it runs
+    public void toggleNBody(int asteroids) {
+        nBody = nBody == null ? new NBody(this, asteroids, random.nextLong()) : null;
+    }
+
+    public NBody getNBody() {
+        return nBody;
+    }
+
+    // craft on nearly circular orbits around the planet the spacecraft starts at, returns the size of the fleet
+    public int launchConstellation(int craft) {
+        fleet.addConstellation(planets.get(0), craft, random);
+        return fleet.size();
+    }
+
+    // places a maneuver node at the next periapsis or apoapsis, the one after when that is about to be passed, or
+    // halfway to the end of an orbit without one
+    public void addManeuverNode() {
+        Orbit orbit = spacecraft.orbit;
+        double orbitTime = spacecraft.getOrbitTime();
+        double timeAhead = orbit.getTimeToNextApsis(orbitTime);
+        if (timeAhead < 0.05 * orbit.period) {
+            timeAhead += 0.5 * orbit.period;
+        }
+        timeAhead = Math.min(timeAhead, 0.5 * (orbit.endTime - orbitTime));
+        maneuverNode = new ManeuverNode(spacecraft, time + timeAhead);
+        updateManeuverNode();
+    }
+
+    public void removeManeuverNode() {
+        maneuverNode = null;
+    }
+
+    public ManeuverNode getManeuverNode() {
+        return maneuverNode;
+    }
+
+    // moves the node along the orbit by a fraction of the period, or of the time left on an orbit that ends
+    public void moveManeuverNode(double fraction) {
+        if (maneuverNode != null) {
+            Orbit orbit = spacecraft.orbit;
+            double span = orbit.period < Double.POSITIVE_INFINITY ? orbit.period : orbit.endTime - spacecraft.getOrbitTime();
+            maneuverNode.setTime(maneuverNode.getTime() + fraction * span, time);
+            updateManeuverNode();
+        }
+    }
+
+    public void setManeuverDeltaV(double prograde, double radial) {
+        if (maneuverNode != null) {
+            maneuverNode.setDeltaV(prograde, radial);
+            updateManeuverNode();
+        }
+    }
+
+    // the preview is recalculated when the node or the orbit changed, also while the simulation is paused
+    private void updateManeuverNode() {
+        if (maneuverNode != null && !maneuverNode.update(time)) {
+            maneuverNode = null;
+        }
+    }
+
+    public void toggleApproachSearch() {
+        searchApproaches = !searchApproaches;
+        approachSearch.clear();
+    }
+
+    // starts the next search for closest approaches once the last one is done, called once per physics tick
+    public void updateApproachSearch() {
+        if (searchApproaches && nBody == null) {
+            approachSearch.update(spacecraft, time);
+        }
+    }
+
+    public ApproachSearch.Approach[] getApproaches() {
+        return searchApproaches ? approachSearch.getApproaches() : null;
+    }
+
+    public void startRecording(Path file) throws IOException {
+        stopRecording();
+        recorder = new TelemetryRecorder(file, planets);
+        listeners.add(recorder);
+    }
+
+    // returns the number of steps recorded, 0 when nothing was being recorded
+    public long stopRecording() {
+        if (recorder == null) {
+            return 0;
+        }
+        listeners.remove(recorder);
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        long records = recorder.getRecordCount();
+        recorder = null;
+        return records;
+    }
+
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    public void warpUp() {
+        warpIndex = Math.min(Orbiter.EVENT_WARP, warpIndex + 1);
+    }
+
+    public void warpDown() {
+        warpIndex = Math.max(0, warpIndex - 1);
+    }
+
+    public void resetWarp() {
+        warpIndex = 0;
+    }
+
+    public void setWarpIndex(int warpIndex) {
+        this.warpIndex = Math.max(0, Math.min(Orbiter.EVENT_WARP, warpIndex));
+    }
+
+    public int getWarpIndex() {
+        return warpIndex;
+    }
+
+    // powered flight and N-body steps at the event warp are taken at the fastest warp speed
+    public double getWarpSpeed() {
+        return Orbiter.WARP_SPEEDS[Math.min(Orbiter.WARP_SPEEDS.length - 1, warpIndex)];
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public Star getSun() {
+        return sun;
+    }
+
+    public ArrayList<Planet> getPlanets() {
+        return planets;
+    }
+
+    public Spacecraft getSpacecraft() {
+        return spacecraft;
+    }
+
+    public Fleet getFleet() {
+        return fleet;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+}
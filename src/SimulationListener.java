@@ -0,0 +1,16 @@
+public interface SimulationListener {
+    enum Event {SOI_ENTRY, SOI_EXIT, CRASH, LOST, RESET}
+
+    void onEvent(Event event, CelestialBody body, double time);
+
+    // prints the events to the console
+    SimulationListener CONSOLE = (event, body, time) -> {
+        switch (event) {
+            case SOI_ENTRY -> System.out.println("Spacecraft is now entering " + body.name + " SOI");
+            case SOI_EXIT -> System.out.println("The spacecraft is now leaving " + body.name + " SOI");
+            case CRASH -> System.out.println("Spacecraft crashed on " + body.name);
+            case LOST -> System.out.println("Spacecraft is now leaving " + body.name + " SOI and is lost");
+            case RESET -> System.out.println("Reset simulation");
+        }
+    };
+}
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+
+// immutable copy of the simulation state, published by the physics thread for the renderer
+// The large arrays are taken over from a snapshot that the renderer handed back through PhysicsThread.recycle, so they
+// are not allocated every step. Nothing reads a handed back snapshot any more, so no snapshot that can still be read
+// ever changes.
+public class Snapshot {
+    public final long wallTime; // System.nanoTime() at which the snapshot was taken
+    public final double time;
+    public final int warpIndex;
+    public final double[] planetX, planetY;
+    public final Spacecraft spacecraft; // a copy that is never updated by the physics thread
+    public final Date date;
+    public final float[] bodyX, bodyY; // positions relative to the sun in N-body mode, otherwise null
+    public final ManeuverNode maneuverNode; // a copy that is never updated, null without a node
+    public final ApproachSearch.Approach[] approaches; // of the last finished search, null while the search is off
+    public final int[] fleetBody; // per craft of the fleet the body it orbits, an index for Fleet.getBody
+    public final float[] fleetX, fleetY; // positions of the fleet relative to the body each craft orbits
+
+    // the recycled snapshot can be null, its arrays are reused when they have the right length
+    public Snapshot(SimulationEngine engine, Snapshot previous, Snapshot recycled) {
+        wallTime = System.nanoTime();
+        time = engine.getTime();
+        warpIndex = engine.getWarpIndex();
+
+        ArrayList<Planet> planets = engine.getPlanets();
+        planetX = new double[planets.size()];
+        planetY = new double[planets.size()];
+        for (int i = 0; i < planets.size(); i++) {
+            Vector position = planets.get(i).getPosition();
+            planetX[i] = position.getX();
+            planetY[i] = position.getY();
+        }
+
+        // the orbit copy is shared with the previous snapshot as long as it was not recalculated
+        Spacecraft live = engine.getSpacecraft();
+        Orbit orbit = live.orbit;
+        Orbit orbitCopy;
+        if (live.isInPoweredFlight()) {
+            // during a burn the orbit is only recalculated at cutoff, so the osculating orbit is drawn
+            orbitCopy = new Orbit(orbit);
+            orbitCopy.recalculate(live.position, live.velocity);
+        } else if (previous != null && !previous.spacecraft.isInPoweredFlight() && previous.spacecraft.orbit.getRevision() == orbit.getRevision()) {
+            orbitCopy = previous.spacecraft.orbit;
+        } else {
+            orbitCopy = new Orbit(orbit);
+        }
+        spacecraft = new Spacecraft(live, orbitCopy);
+        date = new Date(engine.getDate());
+        maneuverNode = engine.getManeuverNode() != null ? engine.getManeuverNode().getCopy() : null;
+        approaches = engine.getApproaches();
+
+        NBody nBody = engine.getNBody();
+        if (nBody != null) {
+            bodyX = reuse(recycled != null ? recycled.bodyX : null, nBody.count);
+            bodyY = reuse(recycled != null ? recycled.bodyY : null, nBody.count);
+            nBody.getPositions(bodyX, bodyY);
+        } else {
+            bodyX = null;
+            bodyY = null;
+        }
+
+        Fleet fleet = engine.getFleet();
+        fleetBody = reuse(recycled != null ? recycled.fleetBody : null, fleet.size());
+        fleetX = reuse(recycled != null ? recycled.fleetX : null, fleet.size());
+        fleetY = reuse(recycled != null ? recycled.fleetY : null, fleet.size());
+        fleet.getPositions(fleetBody, fleetX, fleetY);
+    }
+
+    // a recorded step, drawn in replay mode without simulating
+    public Snapshot(SimulationEngine engine, TelemetryReplay replay, long index) {
+        wallTime = System.nanoTime();
+        time = replay.getTime(index);
+        warpIndex = replay.getWarpIndex(index);
+
+        ArrayList<Planet> planets = engine.getPlanets();
+        planetX = new double[planets.size()];
+        planetY = new double[planets.size()];
+        for (int i = 0; i < planets.size(); i++) {
+            planetX[i] = replay.getPlanetX(index, i);
+            planetY[i] = replay.getPlanetY(index, i);
+        }
+
+        int body = replay.getBody(index);
+        Orbit orbit = new Orbit(body < 0 ? engine.getSun() : planets.get(body));
+        Vector position = new Vector(0, 0);
+        Vector velocity = new Vector(0, 0);
+        replay.getState(index, position, velocity);
+        orbit.recalculate(position, velocity); // the osculating orbit
+        spacecraft = new Spacecraft(engine.getSpacecraft(), orbit, position, velocity, replay.getFuelMass(index), replay.getThrottleIndex(index),
+                replay.isEngineOn(index), replay.getAccelerationDirection(index));
+        date = new Date(engine.getDate(), replay.getDateMillis(index));
+        bodyX = null;
+        bodyY = null;
+        maneuverNode = null;
+        approaches = null;
+        fleetBody = new int[0]; // the fleet is not recorded
+        fleetX = new float[0];
+        fleetY = new float[0];
+    }
+
+    private static float[] reuse(float[] array, int length) {
+        return array != null && array.length == length ? array : new float[length];
+    }
+
+    private static int[] reuse(int[] array, int length) {
+        return array != null && array.length == length ? array : new int[length];
+    }
+}
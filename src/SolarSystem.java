@@ -0,0 +1,93 @@
+import java.awt.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// The star, planets and moons of a simulation, read from a csv file with one body per line, see system.csv.
+// Every body after the star orbits a body defined before it, so the planets list has parents before their moons.
+public class SolarSystem {
+    public static final String DEFAULT_RESOURCE = "/system.csv";
+    private static final int COLUMNS = 8;
+    public final Star sun;
+    public final ArrayList<Planet> planets = new ArrayList<>();
+
+    private SolarSystem(BufferedReader reader) throws IOException {
+        HashMap<String, CelestialBody> bodies = new HashMap<>();
+        Star star = null;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split(",", -1);
+            if (columns.length != COLUMNS) {
+                throw new IllegalArgumentException("line " + lineNumber + ": expected " + COLUMNS + " columns, found " + columns.length);
+            }
+            String name = columns[0].trim();
+            String parentName = columns[1].trim();
+            if (bodies.containsKey(name)) {
+                throw new IllegalArgumentException("line " + lineNumber + ": " + name + " is defined twice");
+            }
+
+            try {
+                double radius = Double.parseDouble(columns[2].trim());
+                double SOI = Double.parseDouble(columns[3].trim());
+                double mu = Double.parseDouble(columns[4].trim());
+                Color color = Color.decode(columns[5].trim());
+
+                if (star == null) {
+                    if (!parentName.isEmpty()) {
+                        throw new IllegalArgumentException("line " + lineNumber + ": the first body must be the star, without a parent");
+                    }
+                    star = new Star(radius, SOI, mu, color, name);
+                    bodies.put(name, star);
+                    continue;
+                }
+
+                CelestialBody parent = bodies.get(parentName);
+                if (parent == null) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": unknown parent " + parentName + ", a parent must come before its moons");
+                }
+                double semiMajorAxis = Double.parseDouble(columns[6].trim());
+                double eccentricity = Double.parseDouble(columns[7].trim());
+                if (semiMajorAxis * (1 + eccentricity) + SOI > parent.SOI) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": the SOI of " + name + " leaves the SOI of " + parentName);
+                }
+                Planet planet = new Planet(parent, radius, SOI, mu, color, semiMajorAxis, eccentricity, name);
+                planets.add(planet);
+                bodies.put(name, planet);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        if (star == null || planets.isEmpty()) {
+            throw new IllegalArgumentException("a solar system needs a star and at least one planet");
+        }
+        sun = star;
+    }
+
+    public static SolarSystem load() {
+        InputStream stream = SolarSystem.class.getResourceAsStream(DEFAULT_RESOURCE);
+        if (stream == null) {
+            throw new UncheckedIOException(new FileNotFoundException("resource " + DEFAULT_RESOURCE));
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            return new SolarSystem(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static SolarSystem load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return new SolarSystem(reader);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+public class Space extends JPanel {
+    private static final int LAYER_MARGIN = 256; // pixels the view can move before the orbit layer is drawn again
+    private static final int PROFILER_Y = 50; // top of the performance overlay, below the warp speed
+    private final SimulationEngine engine;
+    private Snapshot current; // the state that is drawn
+    private int[] fleetPixelX, fleetPixelY;
+    private int xBound, yBound; // size of the frame
+    private boolean showUI = true;
+    private boolean showProfiler;
+    private boolean paused;
+    private String cameraName;
+    private String replayMessage; // replay time and speed, null while simulating
+    private String paintedReplayMessage;
+    private long timeCameraPositionChanged;
+    private static final int FLEET_COLOR = 0xFF80FF80;
+    private BufferedImage bodyImage; // the asteroids of N-body mode and the fleet are drawn as pixels
+    private BufferedImage orbitLayer; // space with the orbit, apsides and SOI, only drawn again when the orbit, zoom or frame size changes
+    private Orbit layerOrbit;
+    private int layerRevision, layerScaleFactor;
+    private int layerX, layerY; // position of the layer relative to the pixel location of the orbited body
+
+    // what was on screen after the last repaint, to find out what has to be repainted for the next frame
+    private Snapshot paintedSnapshot;
+    private Orbit paintedOrbit;
+    private ManeuverNode paintedManeuverNode;
+    private ApproachSearch.Approach[] paintedApproaches;
+    private final int[] paintedView = new int[6], view = new int[6];
+    private final ArrayList<Rectangle> dirty = new ArrayList<>(); // regions to repaint when not everything changed
+    private Rectangle paintedLayerBounds = new Rectangle(0, 0, -1, -1), layerBounds = new Rectangle(0, 0, -1, -1); // of what the orbit layer shows, on screen
+    private int[] paintedBounds = new int[0], bounds = new int[0]; // x, y, width and height of the sun, planets and spacecraft
+    private final Rectangle frame = new Rectangle(); // the visible part of the screen for the maneuver preview
+
+    public Space(SimulationEngine engine) {
+        this.engine = engine;
+        setBackground(Color.BLACK); // space, filled by super.paintComponent
+    }
+
+    // the pixel locations of the fleet are computed by the renderer for this snapshot, as many as it has craft
+    public void setSnapshot(Snapshot current, int[] fleetPixelX, int[] fleetPixelY) {
+        this.current = current;
+        this.fleetPixelX = fleetPixelX;
+        this.fleetPixelY = fleetPixelY;
+    }
+
+    public void setFrameSize(int xBound, int yBound) {
+        this.xBound = xBound;
+        this.yBound = yBound;
+    }
+
+    public void toggleUI() {
+        showUI = !showUI;
+    }
+
+    public void toggleProfiler() {
+        showProfiler = !showProfiler;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public void setReplayMessage(String replayMessage) {
+        this.replayMessage = replayMessage;
+    }
+
+    // shows the camera position message for two seconds
+    public void showCameraPosition(String cameraName) {
+        this.cameraName = cameraName;
+        timeCameraPositionChanged = System.currentTimeMillis();
+    }
+
+    private boolean isCameraPositionShown() {
+        return System.currentTimeMillis() - timeCameraPositionChanged < 2000;
+    }
+
+    // Repaints everything when the zoom, the frame size or the orbit changed or a message appeared, otherwise only the
+    // bodies that moved, the orbit layer where it moved with the camera and the data panels when there is a new
+    // snapshot. Nothing is repainted while the picture stays the same.
+    public void repaintChanged() {
+        Orbit orbit = current.spacecraft.orbit;
+        view[0] = OrbitCalculator.scaleFactor;
+        view[1] = xBound;
+        view[2] = yBound;
+        view[3] = (showUI ? 1 : 0) + (paused ? 2 : 0) + (isCameraPositionShown() ? 4 : 0) + (showProfiler ? 8 : 0);
+        view[4] = orbit.getRevision();
+        view[5] = current.bodyX != null ? 1 : 0;
+        updateBounds();
+
+        int originX = orbit.celestialBody.x_int + Orbiter.xdrag;
+        int originY = orbit.celestialBody.y_int + Orbiter.ydrag;
+        if (showUI && orbit == layerOrbit) {
+            layerBounds = orbit.getDrawnBounds();
+            layerBounds.translate(originX, originY);
+        } else {
+            layerBounds.setBounds(0, 0, -1, -1); // empty, adding it to the dirty region adds nothing
+        }
+        // the maneuver preview and the approaches are drawn where the orbit is, but their extent is not known here
+        boolean layerMoved = !layerBounds.equals(paintedLayerBounds);
+        boolean overlaysMoved = layerMoved && (current.maneuverNode != null || current.approaches != null && current.approaches.length > 0);
+
+        if (current.bodyX != null || current.fleetX.length > 0 || orbit != paintedOrbit || current.maneuverNode != paintedManeuverNode || current.approaches != paintedApproaches
+                || !Arrays.equals(view, paintedView) || bounds.length != paintedBounds.length || showUI && isLayerOutdated(orbit, originX, originY) || overlaysMoved) {
+            repaint();
+        } else {
+            dirty.clear();
+            if (layerMoved) { // the layer is opaque, drawing it in the old place clears what it showed there
+                addDirty(paintedLayerBounds);
+                addDirty(layerBounds);
+            }
+            for (int i = 0; i < bounds.length; i += 4) {
+                if (bounds[i] != paintedBounds[i] || bounds[i + 1] != paintedBounds[i + 1] || bounds[i + 2] != paintedBounds[i + 2]) {
+                    addDirty(new Rectangle(paintedBounds[i], paintedBounds[i + 1], paintedBounds[i + 2], paintedBounds[i + 3]));
+                    addDirty(new Rectangle(bounds[i], bounds[i + 1], bounds[i + 2], bounds[i + 3]));
+                }
+            }
+            if (current != paintedSnapshot && showUI && current.date.getDay() != paintedSnapshot.date.getDay()) {
+                addDirty(new Rectangle(xBound - 100, 0, 100, 20)); // date
+            }
+            if (current != paintedSnapshot && showUI) {
+                addDirty(new Rectangle(0, 0, 130, 45)); // warp speed
+                addDirty(new Rectangle(0, yBound - 130, 193, 130)); // orbit and flight data
+                addDirty(new Rectangle(xBound - 150, yBound - 90, 150, 90)); // propellant
+                if (current.maneuverNode != null) { // time until the burn
+                    addDirty(new Rectangle(current.maneuverNode.getPixelX() + 10, current.maneuverNode.getPixelY() + 5, 330, 35));
+                }
+            }
+            if (showProfiler) { // changes with every frame
+                addDirty(new Rectangle(0, PROFILER_Y, 430, 15 * Profiler.Phase.values().length + 25));
+            }
+            if (!Objects.equals(replayMessage, paintedReplayMessage)) {
+                addDirty(new Rectangle(xBound / 2 - 150, 10, 300, 20));
+            }
+            repaintRegions();
+        }
+
+        System.arraycopy(view, 0, paintedView, 0, view.length);
+        int[] swap = paintedBounds;
+        paintedBounds = bounds;
+        bounds = swap;
+        Rectangle swapLayer = paintedLayerBounds;
+        paintedLayerBounds = layerBounds;
+        layerBounds = swapLayer;
+        paintedSnapshot = current;
+        paintedOrbit = orbit;
+        paintedManeuverNode = current.maneuverNode;
+        paintedApproaches = current.approaches;
+        paintedReplayMessage = replayMessage;
+    }
+
+    private void addDirty(Rectangle region) {
+        if (!region.isEmpty()) {
+            dirty.add(region);
+        }
+    }
+
+    // Swing would merge the regions into one rectangle, which covers the frame between the panels in its corners, so
+    // they are painted one by one. Overlapping regions are merged first, so no pixel is painted twice.
+    private void repaintRegions() {
+        for (int i = 0; i < dirty.size(); i++) {
+            for (int j = i + 1; j < dirty.size(); j++) {
+                if (dirty.get(i).intersects(dirty.get(j))) {
+                    dirty.get(i).add(dirty.remove(j));
+                    j = i; // the grown region can overlap regions it was already compared with
+                }
+            }
+        }
+        for (Rectangle region : dirty) {
+            paintImmediately(region);
+        }
+    }
+
+    private void updateBounds() {
+        ArrayList<Planet> planets = engine.getPlanets();
+        int length = 4 * (planets.size() + 2);
+        if (bounds.length != length) {
+            bounds = new int[length];
+        }
+        setBodyBounds(0, engine.getSun());
+        for (int i = 0; i < planets.size(); i++) {
+            setBodyBounds(4 * (i + 1), planets.get(i));
+        }
+        Spacecraft spacecraft = current.spacecraft;
+        setBodyBounds(length - 4, spacecraft.x_int, spacecraft.y_int, 16); // the thrust vector is 15 pixels long
+    }
+
+    private void setBodyBounds(int i, CelestialBody body) {
+        setBodyBounds(i, body.x_int, body.y_int, body.radius_int + 1);
+    }
+
+    private void setBodyBounds(int i, int x, int y, int radius) {
+        bounds[i] = x + Orbiter.xdrag - radius;
+        bounds[i + 1] = y + Orbiter.ydrag - radius;
+        bounds[i + 2] = 2 * radius + 1;
+        bounds[i + 3] = 2 * radius + 1;
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        long start = Profiler.start();
+        super.paintComponent(graphics);
+        Graphics2D g2d = (Graphics2D) graphics;
+        paintSpace(g2d);
+        Profiler.record(Profiler.Phase.PAINT, start);
+
+        if (showProfiler) {
+            Profiler.drawUI(g2d, PROFILER_Y);
+        }
+    }
+
+    private void paintSpace(Graphics2D g2d) {
+        Spacecraft spacecraft = current.spacecraft;
+
+        if (current.bodyX != null) {
+            drawNBody(g2d);
+            return;
+        }
+
+        // draw orbit
+        if (showUI) {
+            drawOrbitLayer(g2d, spacecraft.orbit);
+            if (current.maneuverNode != null) {
+                frame.setBounds(0, 0, xBound, yBound);
+                current.maneuverNode.draw(g2d, frame, current.time);
+            }
+            if (current.approaches != null) {
+                ApproachSearch.draw(g2d, current.approaches);
+            }
+        }
+
+        // draw celestialBodies
+        engine.getSun().draw(g2d);
+        for (Planet planet : engine.getPlanets()) {
+            planet.draw(g2d);
+        }
+        drawFleet(g2d);
+
+        // draw spacecraft
+        g2d.setColor(Color.WHITE);
+        spacecraft.draw(g2d);
+
+        if (showUI) {
+            // draw engine thrust direction
+            spacecraft.drawThrustVector(g2d);
+
+            // draw UI components:
+            Orbiter.drawWarpUI(g2d, current.warpIndex); // warp speeds
+        }
+
+        if (paused) { // pause message
+            g2d.drawString("Simulation paused", xBound / 2 - 40, 25);
+        }
+        if (replayMessage != null) {
+            g2d.drawString(replayMessage, xBound / 2 - 110, 25);
+        }
+        if (isCameraPositionShown()) { // camera position message
+            g2d.drawString("Camera position: " + cameraName, xBound / 2 - 45, yBound - 50);
+        }
+
+        if (showUI) {
+            // UI backgrounds
+            g2d.setColor(Color.GRAY);
+            g2d.fillRect(0, yBound - 130, 193, 130); // orbit data
+            g2d.fillRect(xBound - 150, yBound - 90, 150, 90); // spacecraft data
+            g2d.fillRect(xBound - 100, 0, 100, 20); // date
+
+            // orbit, spacecraft data and date UI
+            g2d.setColor(Color.BLACK);
+            spacecraft.orbit.drawUI(g2d, yBound);
+            spacecraft.drawFlightDataUI(g2d, yBound);
+            spacecraft.drawPropellantUI(g2d, xBound, yBound);
+            current.date.drawUI(g2d, xBound);
+        }
+    }
+
+    // The orbit is drawn on black into an image a margin larger than the frame, which moves along with the orbited body.
+    // It is only drawn again when the orbit, zoom or frame size changes or the view moved further than the margin. The
+    // image is opaque, so drawing it is a plain copy that also replaces clearing the frame.
+    private void drawOrbitLayer(Graphics2D g2d, Orbit orbit) {
+        int originX = orbit.celestialBody.x_int + Orbiter.xdrag;
+        int originY = orbit.celestialBody.y_int + Orbiter.ydrag;
+        int width = xBound + 2 * LAYER_MARGIN;
+        int height = yBound + 2 * LAYER_MARGIN;
+        if (orbitLayer == null || orbitLayer.getWidth() != width || orbitLayer.getHeight() != height) {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            orbitLayer = configuration != null ? configuration.createCompatibleImage(width, height)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            layerOrbit = null;
+        }
+
+        if (isLayerOutdated(orbit, originX, originY)) {
+            Graphics2D layer = orbitLayer.createGraphics();
+            layer.setColor(Color.BLACK);
+            layer.fillRect(0, 0, width, height);
+            layer.setFont(g2d.getFont());
+            layer.translate(LAYER_MARGIN, LAYER_MARGIN); // the layer starts a margin outside the frame
+
+            layer.setColor(Color.LIGHT_GRAY);
+            orbit.draw(layer, new Rectangle(-LAYER_MARGIN, -LAYER_MARGIN, width, height));
+
+            // draw extremes
+            orbit.drawPeriapsis(layer);
+            orbit.drawApoapsis(layer);
+
+            // draw SOI
+            orbit.drawSOI(layer);
+            layer.dispose();
+
+            layerOrbit = orbit;
+            layerRevision = orbit.getRevision();
+            layerScaleFactor = OrbitCalculator.scaleFactor;
+            layerX = -LAYER_MARGIN - originX;
+            layerY = -LAYER_MARGIN - originY;
+        }
+        g2d.drawImage(orbitLayer, originX + layerX, originY + layerY, null);
+    }
+
+    private boolean isLayerOutdated(Orbit orbit, int originX, int originY) {
+        int width = xBound + 2 * LAYER_MARGIN;
+        int height = yBound + 2 * LAYER_MARGIN;
+        boolean layerCoversFrame = originX + layerX <= 0 && originX + layerX + width >= xBound && originY + layerY <= 0 && originY + layerY + height >= yBound;
+        return orbitLayer == null || orbitLayer.getWidth() != width || orbitLayer.getHeight() != height
+                || orbit != layerOrbit || orbit.getRevision() != layerRevision || OrbitCalculator.scaleFactor != layerScaleFactor || !layerCoversFrame;
+    }
+
+    // the pixels of the transparent image the size of the frame
+    private int[] clearBodyImage() {
+        if (bodyImage == null || bodyImage.getWidth() != xBound || bodyImage.getHeight() != yBound) {
+            bodyImage = new BufferedImage(Math.max(1, xBound), Math.max(1, yBound), BufferedImage.TYPE_INT_ARGB);
+        }
+        int[] pixels = ((DataBufferInt) bodyImage.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, 0);
+        return pixels;
+    }
+
+    // every craft is a dot of two by two pixels, a rectangle per craft is too slow for thousands of them
+    private void drawFleet(Graphics2D g2d) {
+        if (current.fleetX.length == 0) {
+            return;
+        }
+        int[] pixels = clearBodyImage();
+        for (int i = 0; i < current.fleetX.length; i++) {
+            int x = fleetPixelX[i] + Orbiter.xdrag;
+            int y = fleetPixelY[i] + Orbiter.ydrag;
+            if (x >= 0 && x < xBound - 1 && y >= 0 && y < yBound - 1) {
+                int j = y * xBound + x;
+                pixels[j] = FLEET_COLOR;
+                pixels[j + 1] = FLEET_COLOR;
+                pixels[j + xBound] = FLEET_COLOR;
+                pixels[j + xBound + 1] = FLEET_COLOR;
+            }
+        }
+        g2d.drawImage(bodyImage, 0, 0, null);
+    }
+
+    private void drawNBody(Graphics2D g2d) {
+        int[] pixels = clearBodyImage();
+
+        Star sun = engine.getSun();
+        ArrayList<Planet> planets = engine.getPlanets();
+        int majorBodies = planets.size() + 2; // the sun, the planets and the spacecraft
+        int originX = sun.x_int + Orbiter.xdrag;
+        int originY = sun.y_int + Orbiter.ydrag;
+        int scaleFactor = OrbitCalculator.scaleFactor;
+        for (int i = majorBodies; i < current.bodyX.length; i++) {
+            int x = originX + (int) (scaleFactor * current.bodyX[i]);
+            int y = originY - (int) (scaleFactor * current.bodyY[i]);
+            if (x >= 0 && x < xBound && y >= 0 && y < yBound) {
+                pixels[y * xBound + x] = 0xFFA0A0A0;
+            }
+        }
+        g2d.drawImage(bodyImage, 0, 0, null);
+
+        sun.draw(g2d);
+        for (int i = 0; i < planets.size(); i++) {
+            Planet planet = planets.get(i);
+            int x = originX + (int) (scaleFactor * current.bodyX[i + 1]);
+            int y = originY - (int) (scaleFactor * current.bodyY[i + 1]);
+            g2d.setColor(planet.color);
+            g2d.fillOval(x - planet.radius_int, y - planet.radius_int, 2 * planet.radius_int, 2 * planet.radius_int);
+        }
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(originX + (int) (scaleFactor * current.bodyX[majorBodies - 1]) - 2, originY - (int) (scaleFactor * current.bodyY[majorBodies - 1]) - 2, 4, 4);
+
+        if (showUI) {
+            Orbiter.drawWarpUI(g2d, current.warpIndex);
+            g2d.drawString("N-body mode: " + current.bodyX.length + " bodies", xBound / 2 - 70, 25);
+        }
+    }
+}
@@ -1,9 +1,15 @@
 import java.awt.*;
+import java.util.ArrayList;
 
 public class Spacecraft extends Orbiter {
     public Orbit orbit;
-    private int nodeIndex = 0;
-    private int subIndex = 0;
+    private final SimulationEngine engine;
+    private double orbitTime = 0; // time since the orbit was last recalculated
+    private PoweredFlight poweredFlight; // created at the first burn, the copies in snapshots never need one
+    private boolean inPoweredFlight = false; // the state is integrated and the orbit is only recalculated at engine cutoff
+    private Planet encounterPlanet; // first SOI of a child of the orbited body entered along the orbit, null if none is predicted
+    private double encounterTime, predictedUntil; // orbit times of the entry and the end of the searched part of the orbit
+    private final ArrayList<Planet> encounterCandidates = new ArrayList<>(); // children of the orbited body the orbit can reach
     public boolean engineAcceleration = false;
     private double engineModeDirection = 0;
     private double accelerationDirection;
@@ -14,103 +20,329 @@ public class Spacecraft extends Orbiter {
     private final double [] massFlowRates = {0, 0.01, 0.02, 0.05, 0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.8, 1.0};
     private int throttleIndex = massFlowRates.length;
     private double massFlowRate = 1.0;
-
-    public Spacecraft(CelestialBody celestialBody){
+    private final static double ENCOUNTER_TOLERANCE = 1e-9;
+    private final static int MAX_PREDICTION_STEPS = 10000;
+    private final static double MAX_PREDICTION_STEP = 0.5;
+    private final static HudText velocityText = new HudText("Velocity = %.3f km/s", 3);
+    private final static HudText heightText = new HudText("Height = %.3f km", 3);
+    private final static HudText deltaVText = new HudText("DeltaV = %.3f km/s", 3);
+    private final static HudText throttleText = new HudText("Throttle = %.0f%%", 0);
+
+    // scratch state for SOI changes and the encounter search, so that stepping never allocates
+    private final Vector scratchPosition = new Vector(0, 0);
+    private final Vector scratchVelocity = new Vector(0, 0);
+    private final Vector planetPosition = new Vector(0, 0);
+    private final Vector planetVelocity = new Vector(0, 0);
+    private double[] previousGaps = new double[0];
+
+    public Spacecraft(SimulationEngine engine, CelestialBody celestialBody){
         super("spacecraft");
+        this.engine = engine;
         orbit = new Orbit(celestialBody);
         deltaV = equivalentVelocity * Math.log((dryMass + fuelMass) / dryMass);
         setPosition(new Vector(0, 0));
     }
 
-    public void update(){
-        if (subIndex < subIndexMax){
-            subIndex ++; // spacecraft does not move
-        } else {
-            updateNodeIndex();
-            subIndex = 0;
+    // copy of the state that is drawn, it is not updated any more
+    public Spacecraft(Spacecraft spacecraft, Orbit orbit){
+        super(spacecraft.name);
+        this.engine = spacecraft.engine;
+        this.orbit = orbit;
+        orbitTime = spacecraft.orbitTime;
+        inPoweredFlight = spacecraft.inPoweredFlight;
+        engineAcceleration = spacecraft.engineAcceleration;
+        engineModeDirection = spacecraft.engineModeDirection;
+        accelerationDirection = spacecraft.accelerationDirection;
+        fuelMass = spacecraft.fuelMass;
+        deltaV = spacecraft.deltaV;
+        throttleIndex = spacecraft.throttleIndex;
+        massFlowRate = spacecraft.massFlowRate;
+        setPosition(new Vector(0, 0));
+        position.set(spacecraft.position);
+        velocity.set(spacecraft.velocity);
+    }
+
+    // a state read back from a recording, drawn in replays
+    public Spacecraft(Spacecraft spacecraft, Orbit orbit, Vector position, Vector velocity, double fuelMass, int throttleIndex,
+                      boolean engineAcceleration, double accelerationDirection){
+        this(spacecraft, orbit);
+        this.position.set(position);
+        this.velocity.set(velocity);
+        this.fuelMass = fuelMass;
+        deltaV = equivalentVelocity * Math.log((dryMass + fuelMass) / dryMass);
+        setThrottle(throttleIndex);
+        this.engineAcceleration = engineAcceleration;
+        this.accelerationDirection = accelerationDirection;
+        orbitTime = 0;
+        inPoweredFlight = false;
+    }
+
+    public void update(double timeStep){
+        if (engineAcceleration && (fuelMass <= 0 || massFlowRate == 0)) {
+            engineAcceleration = false;
         }
+        if (engineAcceleration && engine.getWarpIndex() < 3) {
+            updatePoweredFlight(timeStep);
+            return;
+        }
+        if (inPoweredFlight) {
+            recalculateOrbit(position, velocity); // engine cutoff
+        }
+
+        orbitTime += timeStep;
 
         // check rotation completed (only applicable for ellipse)
-        if (!orbit.isOnEscapePath && !orbit.isOnCrashPath && nodeIndex >= orbit.numberOfNodes) {
-            nodeIndex = nodeIndex % orbit.numberOfNodes;
+        if (!orbit.isOnEscapePath && !orbit.isOnCrashPath && orbitTime >= orbit.period) {
+            double completedPeriods = orbitTime - orbitTime % orbit.period;
+            orbitTime -= completedPeriods;
+            encounterTime -= completedPeriods;
+            predictedUntil -= completedPeriods;
         }
 
-        // check for escape from SOI of planet
-        for (Planet planet : OrbitCalculator.getPlanets()) {
-            if (orbit.celestialBody == planet && orbit.isOnEscapePath && nodeIndex >= orbit.numberOfNodes) {
-                System.out.println("The spacecraft is now leaving " + planet.name + " SOI"); // Spacecrafts starts to orbit the sun
-                orbit.celestialBody = OrbitCalculator.getSun();
-                recalculateOrbit(planet.position.add(position), planet.velocity.add(velocity));
-                updateNodeIndex();
+        // enter the SOI of a planet or moon at the predicted time, also when it falls inside a large time step
+        updatePrediction(orbitTime);
+        if (encounterPlanet != null && orbitTime >= encounterTime) {
+            Planet planet = encounterPlanet;
+            double overshoot = orbitTime - encounterTime;
+            engine.fireEvent(SimulationListener.Event.SOI_ENTRY, planet, engine.getTime() + timeStep - overshoot);
 
-                setPosition(orbit.positionsWrtCb.get(nodeIndex));
-                updatePixelPosition();
+            planet.staticOrbit.getStateAfter(-overshoot, planetPosition, planetVelocity);
+            orbit.updateState(encounterTime, position, velocity);
+
+            orbit.celestialBody = planet;
+            recalculateOrbit(position.subtract(planetPosition, scratchPosition), velocity.subtract(planetVelocity, scratchVelocity));
+
+            // continue on the new orbit with the remaining part of the time step
+            orbitTime = overshoot;
+            orbit.updateState(orbitTime, position, velocity);
+            return;
+        }
+
+        if (orbitTime >= orbit.endTime) {
+            // escape from the SOI of a planet or moon into that of its parent
+            if (orbit.celestialBody instanceof Planet planet && orbit.isOnEscapePath) {
+                double overshoot = orbitTime - orbit.endTime;
+                engine.fireEvent(SimulationListener.Event.SOI_EXIT, planet, engine.getTime() + timeStep - overshoot);
+                planet.staticOrbit.getStateAfter(-overshoot, planetPosition, planetVelocity); // where the planet was at the exit
+                orbit.updateState(orbit.endTime, position, velocity);
+                orbit.celestialBody = planet.parent;
+                recalculateOrbit(planetPosition.add(position, scratchPosition), planetVelocity.add(velocity, scratchVelocity));
+
+                // continue on the new orbit with the remaining part of the time step
+                orbitTime = overshoot;
+                orbit.updateState(orbitTime, position, velocity);
 
                 return;
             }
-        }
 
-        // check for encounter planet's SOI
-        if (orbit.celestialBody == OrbitCalculator.getSun()) {
-            for (Planet planet : OrbitCalculator.getPlanets()) {
-                Vector positionAtEncounter = position.subtract(planet.position);
+            // flew out of the SOI of the star or crashed
+            engine.fireEvent(orbit.isOnCrashPath ? SimulationListener.Event.CRASH : SimulationListener.Event.LOST, orbit.celestialBody,
+                    engine.getTime() + timeStep - (orbitTime - orbit.endTime));
+            restart();
+            return;
+        }
 
-                if (positionAtEncounter.getAbs() < planet.SOI) {
-                    System.out.println("Spacecraft is now entering " + planet.name + " SOI");
+        // update vectors
+        orbit.updateState(orbitTime, position, velocity);
+    }
 
-                    orbit.celestialBody = planet;
-                    recalculateOrbit(positionAtEncounter, velocity.subtract(planet.velocity));
-                    return;
-                }
+    // thrust and gravity are integrated together, the rocket equation follows from the decreasing mass
+    private void updatePoweredFlight(double timeStep) {
+        if (!inPoweredFlight) {
+            if (poweredFlight == null) {
+                poweredFlight = new PoweredFlight();
             }
+            poweredFlight.start(position, velocity, dryMass + fuelMass, orbit.celestialBody.mu);
+            inPoweredFlight = true;
         }
 
-        // check flew out of sun's SOI or crashed
-        if (nodeIndex >= 0) {
-            if (nodeIndex >= orbit.numberOfNodes || orbit.positionsWrtCb.get(nodeIndex).getAbs() < orbit.celestialBody.radius) {
-                reset();
-                OrbitCalculator.resetPlanets();
-                return;
+        double fuelRate = massFlowRate / SimulationEngine.timeStep; // massFlowRate is the fuel burned per step at warp speed 1
+        double burnTime = Math.min(timeStep, fuelMass / fuelRate);
+        try {
+            poweredFlight.integrate(burnTime, fuelRate, equivalentVelocity, engineModeDirection);
+        } catch (IllegalStateException e) {
+            // the integration failed, the engine is cut off at the start of the step, where the state still is
+            engineAcceleration = false;
+            recalculateOrbit(position, velocity);
+            update(timeStep);
+            return;
+        }
+        poweredFlight.getState(position, velocity);
+        fuelMass = burnTime < timeStep ? 0 : poweredFlight.getMass() - dryMass;
+        accelerationDirection = poweredFlight.getThrustAngle();
+
+        // Remaining deltaV
+        deltaV = equivalentVelocity * Math.log((dryMass + fuelMass) / dryMass);
+
+        if (burnTime < timeStep) {
+            // out of fuel, coast for the rest of the time step
+            engineAcceleration = false;
+            recalculateOrbit(position, velocity);
+            update(timeStep - burnTime);
+        } else {
+            updatePoweredBoundaries(timeStep);
+        }
+    }
+
+    // Crashes and SOI changes at the end of a powered step, handled right away as the engine may stay on. After an SOI
+    // change the next powered step starts again from the state relative to the new body.
+    private void updatePoweredBoundaries(double timeStep) {
+        double distance = position.getAbs();
+        double eventTime = engine.getTime() + timeStep;
+        if (distance < orbit.celestialBody.radius) {
+            engine.fireEvent(SimulationListener.Event.CRASH, orbit.celestialBody, eventTime);
+            restart();
+            return;
+        }
+        if (distance > orbit.celestialBody.SOI) {
+            if (orbit.celestialBody instanceof Planet planet) {
+                engine.fireEvent(SimulationListener.Event.SOI_EXIT, planet, eventTime);
+                orbit.celestialBody = planet.parent;
+                recalculateOrbit(planet.getPosition().add(position, scratchPosition), planet.getVelocity().add(velocity, scratchVelocity));
+                position.set(scratchPosition);
+                velocity.set(scratchVelocity);
+            } else {
+                engine.fireEvent(SimulationListener.Event.LOST, orbit.celestialBody, eventTime);
+                restart();
             }
+            return;
+        }
+        Planet planet = getChildSOI();
+        if (planet != null) {
+            engine.fireEvent(SimulationListener.Event.SOI_ENTRY, planet, eventTime);
+            orbit.celestialBody = planet;
+            recalculateOrbit(position.subtract(planet.getPosition(), scratchPosition), velocity.subtract(planet.getVelocity(), scratchVelocity));
+            position.set(scratchPosition);
+            velocity.set(scratchVelocity);
+        }
+    }
 
-            // update vectors
-            setPosition(orbit.positionsWrtCb.get(nodeIndex));
-            if (nodeIndex > 0) {
-                oldPosition = orbit.positionsWrtCb.get(nodeIndex - 1);
-                velocity.setX((position.getX() - oldPosition.getX()) / orbit.dT);
-                velocity.setY((position.getY() - oldPosition.getY()) / orbit.dT);
+    // the child whose SOI the spacecraft is in, null if none, only the children of the orbited body are tested,
+    // their own moons can only be reached through them
+    private Planet getChildSOI() {
+        double distance = position.getAbs();
+        for (Planet planet : orbit.celestialBody.children) {
+            // children that never come near this distance to their parent are skipped without solving their position
+            if (distance < planet.staticOrbit.getMinDistance() - planet.SOI || distance > planet.staticOrbit.getMaxDistance() + planet.SOI) {
+                continue;
             }
+            Vector planetPosition = planet.getPosition();
+            double dx = position.getX() - planetPosition.getX();
+            double dy = position.getY() - planetPosition.getY();
+            if (dx * dx + dy * dy < planet.SOI * planet.SOI) {
+                return planet;
+            }
+        }
+        return null;
+    }
+
+    public boolean isInPoweredFlight() {
+        return inPoweredFlight;
+    }
+
+    public double getOrbitTime() {
+        return orbitTime;
+    }
+
+    // For maneuver previews on a copy: the orbit starts with the state after a burn some time ahead of now and is
+    // searched for an SOI entry for one period or until it ends. The planets are not moved, their states are predicted.
+    public void planManeuver(Vector position, Vector velocity, double timeAhead) {
+        recalculateOrbit(position, velocity);
+        orbitTime = -timeAhead;
+        double horizon = Math.min(orbit.endTime, orbit.period);
+        while (encounterPlanet == null && !encounterCandidates.isEmpty() && predictedUntil < horizon) {
+            predictEncounter(horizon);
         }
+    }
+
+    // null when no SOI entry has been found along the searched part of the orbit
+    public Planet getEncounterPlanet() {
+        return encounterPlanet;
+    }
 
-        // check engine acceleration
-        if (fuelMass > massFlowRate * Orbiter.getWarpSpeed() && massFlowRate > 0) {
-            if (engineAcceleration && Orbiter.warpIndex < 3) {
+    public double getEncounterTime() {
+        return encounterTime;
+    }
 
-                accelerationDirection = velocity.getAngle() + engineModeDirection;
+    // time until the orbit ends, the next SOI entry or the next periapsis or apoapsis passage
+    public double getTimeToNextEvent() {
+        double timeToEvent = Math.min(orbit.endTime - orbitTime, orbit.getTimeToNextApsis(orbitTime));
+        updatePrediction(orbitTime + timeToEvent);
+        if (encounterPlanet != null) {
+            timeToEvent = Math.min(timeToEvent, encounterTime - orbitTime);
+        }
+        return Math.max(0, timeToEvent);
+    }
 
-                // Rocket equation over one timestep:
-                double currentMass = dryMass + fuelMass;
-                double deltaVUpdate = equivalentVelocity * Math.log(currentMass / (currentMass - massFlowRate * Orbiter.getWarpSpeed()));
-                fuelMass -= massFlowRate * Orbiter.getWarpSpeed();
+    // makes sure the orbit has been searched for SOI entries up to at least the given orbit time
+    private void updatePrediction(double time) {
+        while (encounterPlanet == null && !encounterCandidates.isEmpty() && predictedUntil <= time && predictedUntil < orbit.endTime) {
+            predictEncounter(Math.min(orbit.endTime, Math.max(time, orbitTime + orbit.period)));
+        }
+    }
 
-                velocity.addFromRadialCoordinates(deltaVUpdate, accelerationDirection);
-                recalculateOrbit(position, velocity);
-                nodeIndex = -1;
+    // Searches the orbit from predictedUntil up to the given orbit time for the first SOI entry.
+    // Steps are a fraction of the time needed to close the gap to each SOI at the current relative speed, so they get
+    // small near an SOI and large in between. A crossing inside a step is refined by bisection.
+    private void predictEncounter(double horizon) {
+        Vector position = scratchPosition;
+        Vector velocity = scratchVelocity;
+        ArrayList<Planet> planets = encounterCandidates;
+        if (previousGaps.length < planets.size()) {
+            previousGaps = new double[planets.size()];
+        }
 
-                // Remaining deltaV
-                deltaV = equivalentVelocity * Math.log((dryMass + fuelMass) / dryMass);
+        double time = predictedUntil;
+        double previousTime = time;
+        for (int i = 0; i < MAX_PREDICTION_STEPS && time < horizon; i++) {
+            double step = MAX_PREDICTION_STEP;
+
+            for (int j = 0; j < planets.size(); j++) {
+                Planet planet = planets.get(j);
+                double gap = getSOIGap(planet, time, position, velocity, planetPosition, planetVelocity);
+                double dx = position.getX() - planetPosition.getX();
+                double dy = position.getY() - planetPosition.getY();
+                double dvx = velocity.getX() - planetVelocity.getX();
+                double dvy = velocity.getY() - planetVelocity.getY();
+
+                // moving outward on the edge of the SOI, e.g. right after leaving it, is not an entry
+                boolean entered = gap < ENCOUNTER_TOLERANCE && dx * dvx + dy * dvy < 0 || gap < 0 && i > 0 && previousGaps[j] > 0;
+                if (entered) {
+                    encounterPlanet = planet;
+                    encounterTime = gap < -ENCOUNTER_TOLERANCE ? findSOIEntry(planet, previousTime, time) : time;
+                    predictedUntil = encounterTime;
+                    return;
+                }
+                previousGaps[j] = gap;
+                step = Math.min(step, Math.max(Math.abs(gap), ENCOUNTER_TOLERANCE) / (2 * Math.sqrt(dvx * dvx + dvy * dvy)));
             }
-        } else {
-            engineAcceleration = false;
+            previousTime = time;
+            time += step;
         }
+        predictedUntil = Math.min(time, horizon);
     }
 
-    private void updateNodeIndex(){
-        if (warpIndex > 2) { // spacecraft moves
-            nodeIndex += WARP_SPEEDS[warpIndex - 2];
-        } else {
-            nodeIndex ++;
+    // bisection on the distance to the edge of the SOI, outside at the start and inside at the end,
+    // on the scratch state of predictEncounter, which stops once the entry is found
+    private double findSOIEntry(Planet planet, double startTime, double endTime) {
+        while (endTime - startTime > ENCOUNTER_TOLERANCE) {
+            double time = 0.5 * (startTime + endTime);
+            if (getSOIGap(planet, time, scratchPosition, scratchVelocity, planetPosition, planetVelocity) > 0) {
+                startTime = time;
+            } else {
+                endTime = time;
+            }
         }
+        return endTime;
+    }
+
+    // distance outside the SOI of a planet at an orbit time, the states of both are written to the vectors
+    private double getSOIGap(Planet planet, double time, Vector position, Vector velocity, Vector planetPosition, Vector planetVelocity) {
+        orbit.updateState(time, position, velocity);
+        planet.staticOrbit.getStateAfter(time - orbitTime, planetPosition, planetVelocity);
+        double dx = position.getX() - planetPosition.getX();
+        double dy = position.getY() - planetPosition.getY();
+        return Math.sqrt(dx * dx + dy * dy) - planet.SOI;
     }
 
     public void throttleUp() {
@@ -123,6 +355,27 @@ public class Spacecraft extends Orbiter {
         massFlowRate = massFlowRates[throttleIndex];
     }
 
+    public void setThrottle(int throttleIndex) {
+        this.throttleIndex = Math.max(0, Math.min(massFlowRates.length - 1, throttleIndex));
+        massFlowRate = massFlowRates[this.throttleIndex];
+    }
+
+    public int getThrottleIndex() {
+        return throttleIndex;
+    }
+
+    public double getAccelerationDirection() {
+        return accelerationDirection;
+    }
+
+    public int getNumberOfThrottleSettings() {
+        return massFlowRates.length;
+    }
+
+    public double getFuelMass() {
+        return fuelMass;
+    }
+
     public void initStartVectors(){
         double startAngle = 0.25 * Math.PI;
         double height = 0.1;
@@ -131,18 +384,30 @@ public class Spacecraft extends Orbiter {
         Vector velocity = new Vector(0.0001 * Math.round(10000 * Math.sqrt(orbit.celestialBody.mu / height)), startAngle - 0.5 * Math.PI, true);
 
         recalculateOrbit(position, velocity); // ellipse
-        orbit.updatePixelsPositions();
-
-        setPosition(orbit.positionsWrtCb.get(nodeIndex));
+        orbit.updateState(orbitTime, this.position, this.velocity);
     }
 
     public void recalculateOrbit(Vector position, Vector velocity){
+        long start = Profiler.start();
         try {
             orbit.recalculate(position, velocity);
         } catch (Exception e) {
             e.printStackTrace();
         }
-        nodeIndex = 0;
+        orbitTime = 0;
+        inPoweredFlight = false;
+        encounterPlanet = null;
+        predictedUntil = 0;
+
+        // a child can only be met if its distances to the orbited body overlap with those of the orbit
+        encounterCandidates.clear();
+        for (Planet planet : orbit.celestialBody.children) {
+            if (planet.staticOrbit.getMinDistance() - planet.SOI < orbit.getMaxDistance()
+                    && planet.staticOrbit.getMaxDistance() + planet.SOI > orbit.getMinDistance()) {
+                encounterCandidates.add(planet);
+            }
+        }
+        Profiler.record(Profiler.Phase.RECALCULATE_ORBIT, start);
     }
 
     public void setPosition(Vector position){
@@ -153,55 +418,54 @@ public class Spacecraft extends Orbiter {
         return position;
     }
 
-    public void updatePixelPosition() {
-        orbit.updatePixelsPositions();
-
-        x_int = orbit.celestialBody.x_int + (int) Math.round(OrbitCalculator.scaleFactor * position.getX());
-        y_int = orbit.celestialBody.y_int - (int) Math.round(OrbitCalculator.scaleFactor * position.getY());
+    public void updatePixelPosition(double x, double y) {
+        x_int = orbit.celestialBody.x_int + (int) Math.round(OrbitCalculator.scaleFactor * x);
+        y_int = orbit.celestialBody.y_int - (int) Math.round(OrbitCalculator.scaleFactor * y);
     }
 
     public void draw(Graphics2D g2d) {
         g2d.fillRect(x_int - 2 + xdrag, y_int - 2 + ydrag, 4,4);
     }
 
+    // after a crash or a loss, a burn that was running does not carry over to the new spacecraft
+    private void restart() {
+        reset();
+        engine.endRunningBurn();
+        engine.resetPlanets();
+    }
+
     public void reset(){
-        System.out.println("Spacecraft reset");
+        engineAcceleration = false;
         orbit.reset();
         initStartVectors();
         fuelMass = 500;
-        warpIndex = 0;
-        updateSubIndexMax();
+        engine.resetWarp();
         deltaV = equivalentVelocity * Math.log((dryMass + fuelMass) / dryMass);
         throttleIndex = massFlowRates.length;
         massFlowRate = 1.0;
     }
 
-    public void firePrograde() {
+    public void fire(double engineModeDirection) {
         if (fuelMass > 0 && massFlowRate > 0) {
             engineAcceleration = true;
-            engineModeDirection = 0;
+            this.engineModeDirection = engineModeDirection;
         }
     }
 
+    public void firePrograde() {
+        fire(Burn.PROGRADE);
+    }
+
     public void fireRetrograde() {
-        if (fuelMass > 0 && massFlowRate > 0) {
-            engineAcceleration = true;
-            engineModeDirection = Math.PI;
-        }
+        fire(Burn.RETROGRADE);
     }
 
     public void fireRight() {
-        if (fuelMass > 0 && massFlowRate > 0) {
-            engineAcceleration = true;
-            engineModeDirection = 1.5 * Math.PI;
-        }
+        fire(Burn.RIGHT);
     }
 
     public void fireLeft() {
-        if (fuelMass > 0 && massFlowRate > 0) {
-            engineAcceleration = true;
-            engineModeDirection = 0.5 * Math.PI;
-        }
+        fire(Burn.LEFT);
     }
 
     public void drawThrustVector(Graphics2D g2d){
@@ -221,8 +485,8 @@ public class Spacecraft extends Orbiter {
     }
 
     public void drawFlightDataUI(Graphics2D g2d, int y){
-        g2d.drawString(String.format("Velocity = %.3f km/s", velocity.getAbs()), 8, y - 65);
-        g2d.drawString(String.format("Height = %.3f km", getPosition().getAbs() - orbit.celestialBody.radius), 8, y - 50);
+        velocityText.draw(g2d, velocity.getAbs(), 8, y - 65);
+        heightText.draw(g2d, getPosition().getAbs() - orbit.celestialBody.radius, 8, y - 50);
     }
 
     public void drawPropellantUI(Graphics2D g2d, int x, int y){
@@ -236,8 +500,8 @@ public class Spacecraft extends Orbiter {
         int leftEdge = x - 142;
         g2d.fillRect(leftEdge, y - 82, (int) (deltaV * 60), 15);
         g2d.setColor(Color.BLACK);
-        g2d.drawString(String.format("DeltaV = %.3f km/s", deltaV), leftEdge, y - 70);
-        g2d.drawString(String.format("Throttle = %.0f%%", 100 * massFlowRate), leftEdge, y - 55);
+        deltaVText.draw(g2d, deltaV, leftEdge, y - 70);
+        throttleText.draw(g2d, 100 * massFlowRate, leftEdge, y - 55);
         if (engineAcceleration) {
             g2d.fillRect(leftEdge, y - 50, (int) (120 * massFlowRate), 5);
         }
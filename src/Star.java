@@ -2,8 +2,11 @@ import java.awt.*;
 
 public class Star extends CelestialBody{
     public Star (double radius, double SOI, double mu, Color color){
-        super(radius, SOI, mu, color, "sun");
-        this.color = color;
+        this(radius, SOI, mu, color, "sun");
+    }
+
+    public Star (double radius, double SOI, double mu, Color color, String name){
+        super(radius, SOI, mu, color, name);
     }
 
     public void updateMiddle(int x, int y){
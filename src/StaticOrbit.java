@@ -1,36 +1,195 @@
+// The orbit of a planet or moon, which never changes. The state is a function of the time since the last reset only,
+// so there is no error that builds up over the steps. Kepler's equation is only solved when the orbit is created: one
+// revolution is split into segments of equal time, and per segment the position and velocity are fitted with
+// Chebyshev polynomials. Any time is then a lookup of its segment and a few multiply-adds, also for planners and
+// encounter searches that ask for many times far from now.
 public class StaticOrbit {
-    private final double semiLatusRectum, eccentricity, twdAdt, argumentOfPeriapsis;
-    private double trueAnomaly;
-    private final Vector position;
+    private static final int DEGREE = 12; // of the polynomials
+    private static final int TERMS = DEGREE + 1;
+    private static final int INITIAL_SEGMENTS = 16;
+    private static final int MAX_SEGMENTS = 1 << 16;
+    private static final double TOLERANCE = 1e-13; // of the fit, relative to the largest distance and speed
 
-    public StaticOrbit(double semiMajorAxis, double eccentricity){
+    private final double semiLatusRectum, eccentricity, argumentOfPeriapsis;
+    private final double period, velocityFactor;
+    private double epochPhase; // fraction of a revolution since periapsis at the reset
+    private double time; // since the reset
+    private final Vector position, velocity;
+    private boolean stateOutdated = true; // the state is only evaluated when it is asked for
+
+    // per segment the coefficients of x, y, vx and vy, one after another
+    private int segments;
+    private double[] coefficients;
+
+    public StaticOrbit(double semiMajorAxis, double eccentricity, double mu){
         this.eccentricity = eccentricity;
-        double eccentricitySquared = eccentricity * eccentricity;
-        double semiMinorAxis = semiMajorAxis * Math.sqrt(1 - eccentricitySquared);
-        double period = 2 * Math.PI * Math.sqrt(semiMajorAxis * semiMajorAxis * semiMajorAxis / OrbitCalculator.getSun().mu);
-        semiLatusRectum = semiMajorAxis * (1 - eccentricitySquared);
+        period = 2 * Math.PI * Math.sqrt(semiMajorAxis * semiMajorAxis * semiMajorAxis / mu);
+        semiLatusRectum = semiMajorAxis * (1 - eccentricity * eccentricity);
 
-        reset();
-        twdAdt = 2 * Math.PI * semiMajorAxis * semiMinorAxis / period; // = twice dA/dt
         argumentOfPeriapsis = 0;
+        velocityFactor = Math.sqrt(mu / semiLatusRectum);
 
         position = new Vector(0, 0);
+        velocity = new Vector(0, 0);
+        fit();
     }
 
-    public Vector updatePosition(double timeStep){
+    // more segments until the fit is within the tolerance halfway between the nodes
+    private void fit(){
+        double[] exact = new double[4];
+        for (segments = INITIAL_SEGMENTS; ; segments *= 2) {
+            coefficients = new double[4 * TERMS * segments];
+            double[] values = new double[4 * TERMS];
+            for (int segment = 0; segment < segments; segment++) {
+                for (int k = 0; k < TERMS; k++) {
+                    setState(phase(segment, Math.cos(Math.PI * (k + 0.5) / TERMS)), exact);
+                    for (int q = 0; q < 4; q++) {
+                        values[q * TERMS + k] = exact[q];
+                    }
+                }
+                // discrete cosine transform of the values at the Chebyshev nodes
+                for (int q = 0; q < 4; q++) {
+                    for (int j = 0; j < TERMS; j++) {
+                        double sum = 0;
+                        for (int k = 0; k < TERMS; k++) {
+                            sum += values[q * TERMS + k] * Math.cos(Math.PI * j * (k + 0.5) / TERMS);
+                        }
+                        coefficients[(4 * segment + q) * TERMS + j] = (j == 0 ? 1.0 : 2.0) / TERMS * sum;
+                    }
+                }
+            }
+            if (segments >= MAX_SEGMENTS || getFitError(exact) < TOLERANCE) {
+                return;
+            }
+        }
+    }
+
+    private double getFitError(double[] exact){
+        double error = 0;
+        for (int segment = 0; segment < segments; segment++) {
+            for (int k = 0; k < DEGREE; k++) {
+                double phase = phase(segment, Math.cos(Math.PI * (k + 1) / TERMS)); // between two nodes
+                setState(phase, exact);
+                evaluate(phase, position, velocity);
+                error = Math.max(error, Math.max(Math.abs(exact[0] - position.getX()), Math.abs(exact[1] - position.getY())) / getMaxDistance());
+                error = Math.max(error, Math.max(Math.abs(exact[2] - velocity.getX()), Math.abs(exact[3] - velocity.getY())) / getMaxSpeed());
+            }
+        }
+        return error;
+    }
+
+    // fraction of a revolution at a point of a segment, u runs from -1 to 1
+    private double phase(int segment, double u){
+        return (segment + 0.5 * (u + 1)) / segments;
+    }
+
+    // Clenshaw's recurrence for the four polynomials of the segment at once
+    private void evaluate(double phase, Vector position, Vector velocity){
+        double scaled = (phase - Math.floor(phase)) * segments;
+        int segment = Math.min(segments - 1, (int) scaled);
+        double u = 2 * (scaled - segment) - 1;
+        int offset = 4 * segment * TERMS;
+        double u2 = 2 * u;
+        double x1 = 0, x2 = 0, y1 = 0, y2 = 0, vx1 = 0, vx2 = 0, vy1 = 0, vy2 = 0;
+        for (int j = DEGREE; j > 0; j--) {
+            double x = u2 * x1 - x2 + coefficients[offset + j];
+            double y = u2 * y1 - y2 + coefficients[offset + TERMS + j];
+            double vx = u2 * vx1 - vx2 + coefficients[offset + 2 * TERMS + j];
+            double vy = u2 * vy1 - vy2 + coefficients[offset + 3 * TERMS + j];
+            x2 = x1;
+            x1 = x;
+            y2 = y1;
+            y1 = y;
+            vx2 = vx1;
+            vx1 = vx;
+            vy2 = vy1;
+            vy1 = vy;
+        }
+        position.set(u * x1 - x2 + coefficients[offset], u * y1 - y2 + coefficients[offset + TERMS]);
+        velocity.set(u * vx1 - vx2 + coefficients[offset + 2 * TERMS], u * vy1 - vy2 + coefficients[offset + 3 * TERMS]);
+    }
+
+    // exact state at a fraction of a revolution since periapsis, solved with Kepler's equation
+    private void setState(double phase, double[] state){
+        double trueAnomaly = Kepler.trueAnomaly(2 * Math.PI * phase, eccentricity);
         double distance = semiLatusRectum / (1 + eccentricity * Math.cos(trueAnomaly));
-        double angularVelocity = twdAdt / (distance * distance);
-        trueAnomaly += angularVelocity * timeStep;
-        position.setVectorFromRadiusAndAngle(distance, argumentOfPeriapsis + trueAnomaly);
+        double angle = argumentOfPeriapsis + trueAnomaly;
+        state[0] = distance * Math.cos(angle);
+        state[1] = distance * Math.sin(angle);
+
+        double radialVelocity = velocityFactor * eccentricity * Math.sin(trueAnomaly);
+        double transverseVelocity = velocityFactor * (1 + eccentricity * Math.cos(trueAnomaly));
+        state[2] = radialVelocity * Math.cos(angle) - transverseVelocity * Math.sin(angle);
+        state[3] = radialVelocity * Math.sin(angle) + transverseVelocity * Math.cos(angle);
+    }
+
+    private double getPhase(double time){
+        return epochPhase + time / period;
+    }
+
+    // the time since the reset is set as a whole instead of summed from the steps, so no rounding error builds up
+    public void setTime(double time){
+        this.time = time;
+        stateOutdated = true;
+    }
+
+    private void updateState(){
+        if (stateOutdated) {
+            evaluate(getPhase(time), position, velocity);
+            stateOutdated = false;
+        }
+    }
+
+    // ephemeris: position and velocity a time after the current position
+    public void getStateAfter(double time, Vector position, Vector velocity){
+        evaluate(getPhase(this.time + time), position, velocity);
+    }
+
+    // the same at a time since the reset, for other threads that took the time of the orbit when they started
+    public void getStateAt(double time, Vector position, Vector velocity){
+        evaluate(getPhase(time), position, velocity);
+    }
+
+    public double getTime(){
+        return time;
+    }
+
+    public double getPeriod(){
+        return period;
+    }
 
+    public Vector getPosition(){
+        updateState();
         return position;
     }
 
+    public Vector getVelocity(){
+        updateState();
+        return velocity;
+    }
+
+    public double getMinDistance(){
+        return semiLatusRectum / (1 + eccentricity);
+    }
+
+    public double getMaxDistance(){
+        return semiLatusRectum / (1 - eccentricity);
+    }
+
+    // speed at periapsis
+    public double getMaxSpeed(){
+        return velocityFactor * (1 + eccentricity);
+    }
+
+    // keeps counting up after every revolution
     public double getTrueAnomaly(){
-        return trueAnomaly;
+        double meanAnomaly = 2 * Math.PI * getPhase(time);
+        return meanAnomaly - Math.IEEEremainder(meanAnomaly, 2 * Math.PI) + Kepler.trueAnomaly(meanAnomaly, eccentricity);
     }
 
-    public void reset() {
-        trueAnomaly = Math.random() * 2 * Math.PI;
+    public void reset(double trueAnomaly) {
+        epochPhase = Kepler.meanAnomaly(trueAnomaly, eccentricity) / (2 * Math.PI);
+        time = 0;
+        stateOutdated = true;
     }
 }
@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+// Streams the state after every step into an append-only binary file through memory mapped chunks, so recording costs
+// a few stores per step and a long flight never has to fit on the heap. TelemetryReplay reads the file back.
+// The file is a header followed by records of a fixed size, so any step can be found without reading the ones before.
+public class TelemetryRecorder implements SimulationListener {
+    public static final int MAGIC = 0x4F524254; // "ORBT"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    private static final int CHUNK_BYTES = 16 << 20; // mapped at once, records never cross the end of a chunk
+
+    // header: magic, version, number of planets, record size, records per chunk and the number of records written
+    static final int HEADER_VERSION = 4, HEADER_PLANETS = 8, HEADER_RECORD_SIZE = 12, HEADER_RECORDS_PER_CHUNK = 16, HEADER_RECORD_COUNT = 24;
+
+    // record: the spacecraft state is relative to the body it orbits (-1 for the sun, otherwise the index of the planet),
+    // events holds a bit for every event of the step and the body and time of the last of them
+    static final int TIME = 0, DATE = 8, WARP_INDEX = 16, BODY = 20, X = 24, Y = 32, VX = 40, VY = 48, FUEL = 56,
+            ACCELERATION_DIRECTION = 64, THROTTLE = 72, FLAGS = 73, EVENTS = 74, EVENT_BODY = 76, EVENT_TIME = 80, PLANETS = 88;
+    static final int ENGINE_ON = 1, POWERED_FLIGHT = 2;
+
+    private final ArrayList<Planet> planets;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int recordSize, recordsPerChunk;
+    private MappedByteBuffer chunk;
+    private long chunkIndex = -1;
+    private long recordCount;
+    private int events, eventBody;
+    private double eventTime;
+    private CelestialBody lastBody; // the index of the orbited body is only looked up when it changes
+    private int lastBodyIndex;
+
+    public TelemetryRecorder(Path file, ArrayList<Planet> planets) throws IOException {
+        this.planets = planets;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recordSize = PLANETS + 16 * planets.size();
+        recordsPerChunk = CHUNK_BYTES / recordSize;
+
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putInt(HEADER_VERSION, VERSION);
+        header.putInt(HEADER_PLANETS, planets.size());
+        header.putInt(HEADER_RECORD_SIZE, recordSize);
+        header.putInt(HEADER_RECORDS_PER_CHUNK, recordsPerChunk);
+        header.putLong(HEADER_RECORD_COUNT, 0);
+    }
+
+    @Override
+    public void onEvent(Event event, CelestialBody body, double time) {
+        events |= 1 << event.ordinal();
+        eventBody = lastBody == body ? lastBodyIndex : indexOf(body);
+        eventTime = time;
+    }
+
+    public void record(SimulationEngine engine) throws IOException {
+        long index = recordCount / recordsPerChunk;
+        if (index != chunkIndex) {
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + index * recordsPerChunk * (long) recordSize, (long) recordsPerChunk * recordSize);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            chunkIndex = index;
+        }
+        int offset = (int) (recordCount % recordsPerChunk) * recordSize;
+
+        Spacecraft spacecraft = engine.getSpacecraft();
+        if (spacecraft.orbit.celestialBody != lastBody) {
+            lastBody = spacecraft.orbit.celestialBody;
+            lastBodyIndex = indexOf(lastBody);
+        }
+        chunk.putDouble(offset + TIME, engine.getTime());
+        chunk.putLong(offset + DATE, engine.getDate().getTimeInMillis());
+        chunk.putInt(offset + WARP_INDEX, engine.getWarpIndex());
+        chunk.putInt(offset + BODY, lastBodyIndex);
+        chunk.putDouble(offset + X, spacecraft.position.getX());
+        chunk.putDouble(offset + Y, spacecraft.position.getY());
+        chunk.putDouble(offset + VX, spacecraft.velocity.getX());
+        chunk.putDouble(offset + VY, spacecraft.velocity.getY());
+        chunk.putDouble(offset + FUEL, spacecraft.getFuelMass());
+        chunk.putDouble(offset + ACCELERATION_DIRECTION, spacecraft.getAccelerationDirection());
+        chunk.put(offset + THROTTLE, (byte) spacecraft.getThrottleIndex());
+        chunk.put(offset + FLAGS, (byte) ((spacecraft.engineAcceleration ? ENGINE_ON : 0) | (spacecraft.isInPoweredFlight() ? POWERED_FLIGHT : 0)));
+        chunk.putShort(offset + EVENTS, (short) events);
+        chunk.putInt(offset + EVENT_BODY, eventBody);
+        chunk.putDouble(offset + EVENT_TIME, eventTime);
+
+        for (int i = 0; i < planets.size(); i++) {
+            Vector position = planets.get(i).getPosition();
+            chunk.putDouble(offset + PLANETS + 16 * i, position.getX());
+            chunk.putDouble(offset + PLANETS + 16 * i + 8, position.getY());
+        }
+
+        // the count is written last, so a reader of an unfinished file never sees a partly written record
+        recordCount++;
+        header.putLong(HEADER_RECORD_COUNT, recordCount);
+        events = 0;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    // the mapped chunks stay valid until they are garbage collected, the end of the file is cut off where possible
+    public void close() throws IOException {
+        header.force();
+        if (chunk != null) {
+            chunk.force();
+        }
+        try {
+            channel.truncate(HEADER_SIZE + recordCount * recordSize);
+        } catch (IOException e) {
+            // some platforms do not truncate mapped files, the record count in the header tells where the records end
+        }
+        channel.close();
+    }
+
+    private int indexOf(CelestialBody body) {
+        return planets.indexOf(body); // -1 for the sun
+    }
+}
@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads a file written by TelemetryRecorder. Chunks are mapped when a record in them is first read, so scrubbing
+// through a long flight only touches the pages that are looked at.
+// Post-flight summary without a display: java TelemetryReplay <file>
+public class TelemetryReplay implements AutoCloseable {
+    private final FileChannel channel;
+    private final int planets, recordSize, recordsPerChunk;
+    private final long recordCount;
+    private final MappedByteBuffer[] chunks;
+
+    public TelemetryReplay(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TelemetryRecorder.HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != TelemetryRecorder.MAGIC || header.getInt(TelemetryRecorder.HEADER_VERSION) != TelemetryRecorder.VERSION) {
+            channel.close();
+            throw new IOException(file + " is not a telemetry file of version " + TelemetryRecorder.VERSION);
+        }
+        planets = header.getInt(TelemetryRecorder.HEADER_PLANETS);
+        recordSize = header.getInt(TelemetryRecorder.HEADER_RECORD_SIZE);
+        recordsPerChunk = header.getInt(TelemetryRecorder.HEADER_RECORDS_PER_CHUNK);
+        recordCount = Math.min(header.getLong(TelemetryRecorder.HEADER_RECORD_COUNT), (channel.size() - TelemetryRecorder.HEADER_SIZE) / recordSize);
+        chunks = new MappedByteBuffer[(int) ((recordCount + recordsPerChunk - 1) / recordsPerChunk)];
+    }
+
+    // for drawing the recording over a loaded system, which needs the planets the recording was made with
+    public TelemetryReplay(Path file, int systemPlanets) throws IOException {
+        this(file);
+        if (planets != systemPlanets) {
+            channel.close();
+            throw new IOException(file + " was recorded with " + planets + " planets, the loaded system has " + systemPlanets);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java TelemetryReplay <recording>");
+            return;
+        }
+        try (TelemetryReplay replay = new TelemetryReplay(Path.of(args[0]))) {
+            if (replay.recordCount == 0) {
+                System.out.println("0 records");
+                return;
+            }
+            System.out.println(replay.recordCount + " records of " + replay.planets + " planets from " + replay.getTime(0) + " to " + replay.getTime(replay.recordCount - 1));
+            double minimumFuel = Double.POSITIVE_INFINITY;
+            long burningRecords = 0;
+            for (long i = 0; i < replay.recordCount; i++) {
+                minimumFuel = Math.min(minimumFuel, replay.getFuelMass(i));
+                burningRecords += replay.isEngineOn(i) ? 1 : 0;
+                int events = replay.getEvents(i);
+                for (SimulationListener.Event event : SimulationListener.Event.values()) {
+                    if ((events & 1 << event.ordinal()) != 0) {
+                        System.out.println(replay.getEventTime(i) + " " + event + " body " + replay.getEventBody(i));
+                    }
+                }
+            }
+            System.out.println("Fuel left: " + minimumFuel + ", engine on in " + burningRecords + " records");
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    // index of the last record at or before the time, the first record for earlier times
+    public long indexAt(double time) {
+        long low = 0, high = recordCount - 1;
+        while (low < high) {
+            long middle = (low + high + 1) >>> 1;
+            if (getTime(middle) <= time) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    public double getTime(long index) {
+        return getDouble(index, TelemetryRecorder.TIME);
+    }
+
+    public long getDateMillis(long index) {
+        return chunk(index).getLong(offset(index) + TelemetryRecorder.DATE);
+    }
+
+    public int getWarpIndex(long index) {
+        return chunk(index).getInt(offset(index) + TelemetryRecorder.WARP_INDEX);
+    }
+
+    // -1 for the sun, otherwise the index of the planet
+    public int getBody(long index) {
+        return chunk(index).getInt(offset(index) + TelemetryRecorder.BODY);
+    }
+
+    // position and velocity of the spacecraft relative to its body
+    public void getState(long index, Vector position, Vector velocity) {
+        position.setX(getDouble(index, TelemetryRecorder.X));
+        position.setY(getDouble(index, TelemetryRecorder.Y));
+        velocity.setX(getDouble(index, TelemetryRecorder.VX));
+        velocity.setY(getDouble(index, TelemetryRecorder.VY));
+    }
+
+    public double getFuelMass(long index) {
+        return getDouble(index, TelemetryRecorder.FUEL);
+    }
+
+    public double getAccelerationDirection(long index) {
+        return getDouble(index, TelemetryRecorder.ACCELERATION_DIRECTION);
+    }
+
+    public int getThrottleIndex(long index) {
+        return chunk(index).get(offset(index) + TelemetryRecorder.THROTTLE);
+    }
+
+    public boolean isEngineOn(long index) {
+        return (chunk(index).get(offset(index) + TelemetryRecorder.FLAGS) & TelemetryRecorder.ENGINE_ON) != 0;
+    }
+
+    // a bit for every SimulationListener.Event of the step
+    public int getEvents(long index) {
+        return chunk(index).getShort(offset(index) + TelemetryRecorder.EVENTS);
+    }
+
+    public int getEventBody(long index) {
+        return chunk(index).getInt(offset(index) + TelemetryRecorder.EVENT_BODY);
+    }
+
+    public double getEventTime(long index) {
+        return getDouble(index, TelemetryRecorder.EVENT_TIME);
+    }
+
+    // position of a planet relative to its parent
+    public double getPlanetX(long index, int planet) {
+        return getDouble(index, TelemetryRecorder.PLANETS + 16 * planet);
+    }
+
+    public double getPlanetY(long index, int planet) {
+        return getDouble(index, TelemetryRecorder.PLANETS + 16 * planet + 8);
+    }
+
+    private double getDouble(long index, int field) {
+        return chunk(index).getDouble(offset(index) + field);
+    }
+
+    private int offset(long index) {
+        return (int) (index % recordsPerChunk) * recordSize;
+    }
+
+    private MappedByteBuffer chunk(long index) {
+        int i = (int) (index / recordsPerChunk);
+        if (chunks[i] == null) {
+            long start = TelemetryRecorder.HEADER_SIZE + i * (long) recordsPerChunk * recordSize;
+            long records = Math.min(recordsPerChunk, recordCount - (long) i * recordsPerChunk);
+            try {
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, records * recordSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return chunks[i];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,74 @@
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+public class Trajectory {
+    private static final int INITIAL_CAPACITY = 256;
+    private double[] xs = new double[INITIAL_CAPACITY];
+    private double[] ys = new double[INITIAL_CAPACITY];
+    private int size;
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(double x, double y) {
+        if (size == xs.length) {
+            grow();
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public void addFromRadiusAndAngle(double radius, double angle) {
+        add(radius * Math.cos(angle), radius * Math.sin(angle));
+    }
+
+    private void grow() {
+        int capacity = 2 * xs.length;
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    // Polyline through the nodes in pixels relative to the origin, y axis pointing down. Segments that do not cross
+    // the region are left out, the path continues with a move to the next segment that does.
+    public void updatePath(Path2D path, double scaleFactor, Rectangle region) {
+        path.reset();
+        if (size == 0) {
+            return;
+        }
+        int left = region.x - 1, right = region.x + region.width + 1; // one pixel more for the width of the line
+        int top = region.y - 1, bottom = region.y + region.height + 1;
+        boolean connected = false;
+        int x_previous = (int) (scaleFactor * xs[0]);
+        int y_previous = -(int) (scaleFactor * ys[0]);
+        for (int i = 1; i < size; i++) {
+            int x_int = (int) (scaleFactor * xs[i]);
+            int y_int = -(int) (scaleFactor * ys[i]);
+            boolean inRegion = Math.max(x_previous, x_int) >= left && Math.min(x_previous, x_int) <= right
+                    && Math.max(y_previous, y_int) >= top && Math.min(y_previous, y_int) <= bottom;
+            if (inRegion) {
+                if (!connected) {
+                    path.moveTo(x_previous, y_previous);
+                }
+                path.lineTo(x_int, y_int);
+            }
+            connected = inRegion;
+            x_previous = x_int;
+            y_previous = y_int;
+        }
+    }
+}
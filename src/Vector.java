@@ -1,6 +1,8 @@
+// Mutable, so the simulation can keep its vectors and write results into them instead of allocating new ones.
+// The methods with a result vector are the ones to use on the hot path, add and subtract without one allocate.
 public class Vector {
     private double x, y;
-    public double abs;
+    private double abs = Double.NaN; // magnitude, NaN until it is asked for after a change
 
     Vector(double x, double y){
         this.x = x;
@@ -17,6 +19,7 @@ public class Vector {
 
     public void setX(double x){
         this.x = x;
+        abs = Double.NaN;
     }
 
     public double getY(){
@@ -25,16 +28,32 @@ public class Vector {
 
     public void setY(double y){
         this.y = y;
+        abs = Double.NaN;
+    }
+
+    public void set(double x, double y){
+        this.x = x;
+        this.y = y;
+        abs = Double.NaN;
+    }
+
+    public void set(Vector vector){
+        this.x = vector.x;
+        this.y = vector.y;
+        this.abs = vector.abs;
     }
 
     public double getAbs(){
-        return Math.sqrt(x*x + y*y);
+        if (Double.isNaN(abs)) {
+            abs = Math.sqrt(x*x + y*y);
+        }
+        return abs;
     }
 
     public void setVectorFromRadiusAndAngle(double radius, double angle){
-        setX(radius * Math.cos(angle));
-        setY(radius * Math.sin(angle));
-        this.abs = radius;
+        x = radius * Math.cos(angle);
+        y = radius * Math.sin(angle);
+        abs = Math.abs(radius);
     }
 
     public double getAngle() {
@@ -49,9 +68,22 @@ public class Vector {
         return new Vector(this.getX() - vector.getX(), this.getY() - vector.getY());
     }
 
+    // the sum is written to result, which may be this vector or the other one
+    public Vector add(Vector vector, Vector result){
+        result.set(x + vector.x, y + vector.y);
+        return result;
+    }
+
+    // the difference is written to result, which may be this vector or the other one
+    public Vector subtract(Vector vector, Vector result){
+        result.set(x - vector.x, y - vector.y);
+        return result;
+    }
+
     public void addFromRadialCoordinates(double radius, double angle){
         this.x += radius * Math.cos(angle);
         this.y += radius * Math.sin(angle);
+        abs = Double.NaN;
     }
 
     public double dotMultiplication(Vector vector) {